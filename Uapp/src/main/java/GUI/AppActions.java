@@ -1,12 +1,19 @@
 package GUI;
 
 public interface AppActions {
+    String PAGE_DASH = "dash";
+    String PAGE_BOOKS = "books";
+    String PAGE_FORM = "form";
+    String PAGE_HISTORY = "history";
+
     void showDashboard();
     void showBooks();
     void showHistory();
     void openAddBookForm();
     void openEditBookForm(String bookId);
 
+    // halaman yang tampil langsung di-refresh, yang lain cukup ditandai basi (refresh saat dibuka)
     void refreshAll();
+    void saveInBackground();
     void setStatus(String msg, boolean error);
 }
@@ -3,6 +3,7 @@ package GUI;
 import GUI.pages.*;
 import data.LibraryStore;
 import model.Book;
+import service.LibraryEvent;
 import service.LibraryService;
 
 import javax.swing.*;
@@ -10,6 +11,10 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 public class ModernLibraryApp extends JFrame implements AppActions {
 
@@ -18,11 +23,6 @@ public class ModernLibraryApp extends JFrame implements AppActions {
     private static final Path BOOKS_FILE = BASE_DIR.resolve("books.txt");
     private static final Path LOANS_FILE = BASE_DIR.resolve("loans.txt");
 
-    private static final String PAGE_DASH = "dash";
-    private static final String PAGE_BOOKS = "books";
-    private static final String PAGE_FORM = "form";
-    private static final String PAGE_HISTORY = "history";
-
     private final LibraryService service;
 
     private final CardLayout cardLayout = new CardLayout();
@@ -30,6 +30,12 @@ public class ModernLibraryApp extends JFrame implements AppActions {
 
     private NavButton btnDash, btnBooks, btnForm, btnHistory;
     private final JLabel status = new JLabel("Siap.");
+    private final JProgressBar progress = new JProgressBar();
+    private JButton btnSave, btnReload;
+    private int ioRunning = 0;
+
+    private String currentPage;
+    private final Set<String> stalePages = new HashSet<>();
 
     private final DashboardPage dashboardPage;
     private final BooksPage booksPage;
@@ -51,13 +57,10 @@ public class ModernLibraryApp extends JFrame implements AppActions {
         setLocationRelativeTo(null);
 
         LibraryStore store = new LibraryStore(BOOKS_FILE, LOANS_FILE);
+        store.setJournalEnabled(true);
+        store.setAsyncSave(true);
         service = new LibraryService(store);
 
-        try { service.load(); }
-        catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Gagal load data: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-
         dashboardPage = new DashboardPage();
         booksPage = new BooksPage(service, this);
         formPage = new BookFormPage(service, this);
@@ -65,15 +68,34 @@ public class ModernLibraryApp extends JFrame implements AppActions {
 
         setContentPane(buildRoot());
 
+        // menahan klik/ketik ke halaman selama load (data sedang diganti di thread lain)
+        JPanel glass = new JPanel();
+        glass.setOpaque(false);
+        glass.addMouseListener(new java.awt.event.MouseAdapter() {});
+        glass.addKeyListener(new java.awt.event.KeyAdapter() {});
+        glass.setFocusable(true);
+        setGlassPane(glass);
+
+        // mutasi (dari thread mana pun) -> update baris per baris di EDT
+        service.addListener(e -> SwingUtilities.invokeLater(() -> onLibraryChange(e)));
+
         addWindowListener(new java.awt.event.WindowAdapter() {
             @Override public void windowClosing(java.awt.event.WindowEvent e) {
-                try { service.save(); } catch (Exception ignored) {}
+                // tunggu penulisan background selesai sebelum keluar
+                try {
+                    service.save();
+                    service.flush();
+                } catch (Exception ex) {
+                    int ok = JOptionPane.showConfirmDialog(ModernLibraryApp.this,
+                            "Gagal simpan: " + ex.getMessage() + "\nTetap keluar?", "Error", JOptionPane.YES_NO_OPTION);
+                    if (ok != JOptionPane.YES_OPTION) return;
+                }
                 dispose();
             }
         });
 
-        showDashboard();
-        refreshAll();
+        showPage(PAGE_DASH);
+        reloadInBackground("Memuat data...", "Data dimuat.", "Gagal load data: ");
     }
 
     private JPanel buildRoot() {
@@ -137,30 +159,17 @@ public class ModernLibraryApp extends JFrame implements AppActions {
 
         side.add(Box.createVerticalGlue());
 
-        JButton btnSave = new JButton("Simpan");
+        btnSave = new JButton("Simpan");
         UiKit.primary(btnSave);
-        btnSave.addActionListener(e -> {
-            try {
-                service.save();
-                setStatus("Data tersimpan ke: " + BASE_DIR.toAbsolutePath(), false);
-            } catch (Exception ex) {
-                setStatus("Gagal simpan: " + ex.getMessage(), true);
-                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        });
+        btnSave.addActionListener(e -> runIo("Menyimpan...", false, () -> {
+            service.save();
+            service.flush();
+            return null;
+        }, () -> setStatus("Data tersimpan ke: " + BASE_DIR.toAbsolutePath(), false), "Gagal simpan: "));
 
-        JButton btnReload = new JButton("Reload");
+        btnReload = new JButton("Reload");
         UiKit.ghost(btnReload);
-        btnReload.addActionListener(e -> {
-            try {
-                service.load();
-                refreshAll();
-                setStatus("Data reload.", false);
-            } catch (Exception ex) {
-                setStatus("Gagal reload: " + ex.getMessage(), true);
-                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        });
+        btnReload.addActionListener(e -> reloadInBackground("Reload data...", "Data reload.", "Gagal reload: "));
 
         side.add(btnSave);
         side.add(Box.createVerticalStrut(8));
@@ -176,10 +185,19 @@ public class ModernLibraryApp extends JFrame implements AppActions {
         status.setBorder(new EmptyBorder(8, 12, 8, 12));
         status.setForeground(Theme.MUTED);
         bar.add(status, BorderLayout.CENTER);
+
+        progress.setIndeterminate(true);
+        progress.setVisible(false);
+        progress.setPreferredSize(new Dimension(160, 14));
+        JPanel right = new JPanel(new FlowLayout(FlowLayout.RIGHT, 12, 8));
+        right.setOpaque(false);
+        right.add(progress);
+        bar.add(right, BorderLayout.EAST);
         return bar;
     }
 
     private void showPage(String page) {
+        currentPage = page;
         cardLayout.show(content, page);
         btnDash.setActive(PAGE_DASH.equals(page));
         btnBooks.setActive(PAGE_BOOKS.equals(page));
@@ -190,22 +208,22 @@ public class ModernLibraryApp extends JFrame implements AppActions {
     // ===================== AppActions =====================
     @Override public void showDashboard() {
         showPage(PAGE_DASH);
-        refreshAll();
+        refreshIfStale(PAGE_DASH);
     }
 
     @Override public void showBooks() {
         showPage(PAGE_BOOKS);
-        refreshAll();
+        refreshIfStale(PAGE_BOOKS);
     }
 
     @Override public void showHistory() {
         showPage(PAGE_HISTORY);
-        refreshAll();
+        refreshIfStale(PAGE_HISTORY);
     }
 
     @Override public void openAddBookForm() {
         showPage(PAGE_FORM);
-        formPage.openAdd(service.getStore().nextBookId());
+        formPage.openAdd(service.getStore().peekBookId());
         setStatus("Mode tambah buku.", false);
     }
 
@@ -222,9 +240,104 @@ public class ModernLibraryApp extends JFrame implements AppActions {
     }
 
     @Override public void refreshAll() {
-        dashboardPage.setStats(service.totalCopies(), service.borrowedCount(), BASE_DIR.toAbsolutePath().toString());
-        booksPage.refresh();
-        historyPage.refresh();
+        stalePages.add(PAGE_DASH);
+        stalePages.add(PAGE_BOOKS);
+        stalePages.add(PAGE_HISTORY);
+        refreshIfStale(currentPage);
+    }
+
+    private void refreshIfStale(String page) {
+        if (page == null || !stalePages.remove(page)) return;
+        if (PAGE_DASH.equals(page)) refreshDashboard();
+        else if (PAGE_BOOKS.equals(page)) booksPage.refresh();
+        else if (PAGE_HISTORY.equals(page)) historyPage.refresh();
+    }
+
+    // halaman yang tampil (selalu segar) menerapkan event per baris; yang tersembunyi ditandai basi saja
+    private void onLibraryChange(LibraryEvent e) {
+        if (PAGE_DASH.equals(currentPage)) refreshDashboard();
+        else stalePages.add(PAGE_DASH);
+
+        if (PAGE_BOOKS.equals(currentPage)) booksPage.apply(e);
+        else stalePages.add(PAGE_BOOKS);
+
+        // event buku tidak mengubah baris history
+        if (e.getLoan() == null) return;
+        if (PAGE_HISTORY.equals(currentPage)) historyPage.apply(e);
+        else stalePages.add(PAGE_HISTORY);
+    }
+
+    private void refreshDashboard() {
+        dashboardPage.setStats(service.totalCopies(), service.borrowedCount(), service.distinctTitles(),
+                service.unavailableBooks(), service.overdueCount(), service.outstandingFines(),
+                BASE_DIR.toAbsolutePath().toString());
+    }
+
+    // setelah mutasi: pesan status dibiarkan milik halaman, cukup progress bar yang tampil
+    @Override public void saveInBackground() {
+        runIo(null, false, () -> {
+            service.save();
+            return null;
+        }, () -> {}, "Gagal simpan: ");
+    }
+
+    // ===================== I/O di background =====================
+    private void reloadInBackground(String busy, String done, String errorPrefix) {
+        runIo(busy, true, () -> {
+            service.load();
+            return null;
+        }, () -> {
+            refreshAll();
+            setStatus(done, false);
+        }, errorPrefix);
+    }
+
+    /**
+     * Jalankan load/save di SwingWorker supaya EDT tetap bebas. Selama berjalan Simpan/Reload
+     * dimatikan dan progress bar tampil; exclusive = halaman juga dikunci (dipakai saat load).
+     * busy null = status bar tidak diubah.
+     * onDone dan pesan error dijalankan kembali di EDT.
+     */
+    private void runIo(String busy, boolean exclusive, Callable<Void> work, Runnable onDone, String errorPrefix) {
+        beginIo(busy, exclusive);
+        new SwingWorker<Void, Void>() {
+            @Override protected Void doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override protected void done() {
+                endIo(exclusive);
+                try {
+                    get();
+                    onDone.run();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    setStatus(errorPrefix + cause.getMessage(), true);
+                    JOptionPane.showMessageDialog(ModernLibraryApp.this, cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void beginIo(String busy, boolean exclusive) {
+        ioRunning++;
+        btnSave.setEnabled(false);
+        btnReload.setEnabled(false);
+        progress.setVisible(true);
+        if (busy != null) setStatus(busy, false);
+        if (exclusive) {
+            getGlassPane().setVisible(true);
+            getGlassPane().requestFocusInWindow();
+        }
+    }
+
+    private void endIo(boolean exclusive) {
+        ioRunning--;
+        if (exclusive) getGlassPane().setVisible(false);
+        if (ioRunning > 0) return;
+        btnSave.setEnabled(true);
+        btnReload.setEnabled(true);
+        progress.setVisible(false);
     }
 
     @Override public void setStatus(String msg, boolean error) {
@@ -91,8 +91,11 @@ public class UiKit {
         table.setIntercellSpacing(new Dimension(0, 0));
     }
 
+    // dipakai per sel saat tabel digambar: formatter tidak dibuat ulang tiap panggilan
+    private static final ThreadLocal<NumberFormat> RUPIAH =
+            ThreadLocal.withInitial(() -> NumberFormat.getInstance(new Locale("id", "ID")));
+
     public static String rupiah(long amount) {
-        NumberFormat nf = NumberFormat.getInstance(new Locale("id", "ID"));
-        return "Rp " + nf.format(amount);
+        return "Rp " + RUPIAH.get().format(amount);
     }
 }
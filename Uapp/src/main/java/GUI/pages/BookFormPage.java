@@ -114,7 +114,7 @@ public class BookFormPage extends JPanel {
 
     private void fillCurrentMode() {
         if (!editMode) {
-            openAdd(service.getStore().nextBookId());
+            openAdd(service.getStore().peekBookId());
         } else {
             Book b = service.getStore().findBook(editId);
             if (b != null) openEdit(b);
@@ -134,9 +134,8 @@ public class BookFormPage extends JPanel {
                 service.updateBook(editId, title, author, year, total);
             }
 
-            service.save();
+            actions.saveInBackground();
             actions.setStatus("Data buku berhasil disimpan.", false);
-            actions.refreshAll();
             actions.showBooks();
 
         } catch (Exception ex) {
@@ -0,0 +1,30 @@
+package GUI.pages;
+
+import model.Book;
+
+class BookTableModel extends RecordTableModel<Book> {
+
+    BookTableModel() {
+        super("ID", "Judul", "Penulis", "Tahun", "Total Buku", "Tersedia");
+    }
+
+    @Override String idOf(Book b) { return b.getId(); }
+
+    @Override
+    Object valueOf(Book b, int column) {
+        switch (column) {
+            case 0: return b.getId();
+            case 1: return b.getTitle();
+            case 2: return b.getAuthor();
+            case 3: return b.getYear();
+            case 4: return b.getStockTotal();
+            default: return b.getStockAvail();
+        }
+    }
+
+    // kolom angka dirender rata kanan oleh renderer Integer bawaan JTable
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column >= 3 ? Integer.class : String.class;
+    }
+}
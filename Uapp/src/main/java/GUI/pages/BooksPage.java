@@ -5,25 +5,45 @@ import GUI.Theme;
 import GUI.UiKit;
 import model.Book;
 import model.Loan;
+import service.LibraryEvent;
 import service.LibraryService;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class BooksPage extends JPanel {
 
+    private static final String MATCH_EXACT = "Exact";
+    private static final String MATCH_FUZZY = "Fuzzy";
+
+    // ketikan dikumpulkan dulu selama jeda ini sebelum query dijalankan
+    private static final int SEARCH_DELAY_MS = 150;
+
+    // satu thread pencarian: query lama yang belum mulai dibatalkan, yang sudah jalan hasilnya dibuang
+    private static final ExecutorService SEARCH_EXEC = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "book-search");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final LibraryService service;
     private final AppActions actions;
 
-    private final DefaultTableModel model;
+    private final BookTableModel model;
     private final JTable table;
-    private final TableRowSorter<DefaultTableModel> sorter;
     private final JTextField tfSearch;
     private final JComboBox<String> cbSort;
+    private final JComboBox<String> cbMatch;
+
+    private final Timer searchTimer;
+    private Future<?> pendingSearch;
+    private volatile int searchGen = 0;   // naik tiap query baru; hasil dengan gen lama tidak dipasang
 
     public BooksPage(LibraryService service, AppActions actions) {
         this.service = service;
@@ -44,6 +64,8 @@ public class BooksPage extends JPanel {
 
         tfSearch = UiKit.field(22);
         cbSort = new JComboBox<>(new String[]{"Default", "Judul (A-Z)", "Tahun (Terbaru)", "Tersedia (Banyak)"});
+        // Fuzzy: toleran salah ketik, hasil diurutkan dari yang paling mirip (Sort diabaikan)
+        cbMatch = new JComboBox<>(new String[]{MATCH_EXACT, MATCH_FUZZY});
 
         JButton btnClear = new JButton("Clear");
         UiKit.ghost(btnClear);
@@ -51,6 +73,7 @@ public class BooksPage extends JPanel {
 
         tools.add(new JLabel("Search:"));
         tools.add(tfSearch);
+        tools.add(cbMatch);
         tools.add(new JLabel("Sort:"));
         tools.add(cbSort);
         tools.add(btnClear);
@@ -58,18 +81,11 @@ public class BooksPage extends JPanel {
         top.add(title, BorderLayout.NORTH);
         top.add(tools, BorderLayout.CENTER);
 
-        model = new DefaultTableModel(new Object[]{"ID", "Judul", "Penulis", "Tahun", "Total Buku", "Tersedia"}, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        model = new BookTableModel();
 
         table = new JTable(model);
         UiKit.styleTable(table);
-
-        sorter = new TableRowSorter<>(model);
-        sorter.setComparator(3, (a, b) -> Integer.compare(Integer.parseInt(a.toString()), Integer.parseInt(b.toString())));
-        sorter.setComparator(4, (a, b) -> Integer.compare(Integer.parseInt(a.toString()), Integer.parseInt(b.toString())));
-        sorter.setComparator(5, (a, b) -> Integer.compare(Integer.parseInt(a.toString()), Integer.parseInt(b.toString())));
-        table.setRowSorter(sorter);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
         JScrollPane scroll = new JScrollPane(table);
         scroll.setBorder(BorderFactory.createLineBorder(Theme.BORDER));
@@ -81,12 +97,14 @@ public class BooksPage extends JPanel {
         JButton btnEdit = new JButton("Edit");
         JButton btnDelete = new JButton("Hapus");
         JButton btnBorrow = new JButton("Pinjam");
+        JButton btnWho = new JButton("Dipinjam Siapa?");
         JButton btnRefresh = new JButton("Refresh");
 
         UiKit.primary(btnAdd);
         UiKit.ghost(btnEdit);
         UiKit.ghost(btnDelete);
         UiKit.ghost(btnBorrow);
+        UiKit.ghost(btnWho);
         UiKit.ghost(btnRefresh);
 
         btnAdd.addActionListener(e -> actions.openAddBookForm());
@@ -100,16 +118,21 @@ public class BooksPage extends JPanel {
         });
         btnDelete.addActionListener(e -> deleteSelected());
         btnBorrow.addActionListener(e -> borrowSelected());
+        btnWho.addActionListener(e -> showBorrowers());
         btnRefresh.addActionListener(e -> actions.refreshAll());
 
         bottom.add(btnAdd);
         bottom.add(btnEdit);
         bottom.add(btnDelete);
         bottom.add(btnBorrow);
+        bottom.add(btnWho);
         bottom.add(btnRefresh);
 
-        tfSearch.getDocument().addDocumentListener(new SimpleDocListener(this::applyFilter));
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> searchInBackground());
+        searchTimer.setRepeats(false);
+        tfSearch.getDocument().addDocumentListener(new SimpleDocListener(searchTimer::restart));
         cbSort.addActionListener(e -> refresh());
+        cbMatch.addActionListener(e -> refresh());
 
         add(top, BorderLayout.NORTH);
         add(scroll, BorderLayout.CENTER);
@@ -117,25 +140,81 @@ public class BooksPage extends JPanel {
     }
 
     public void refresh() {
-        List<Book> view = service.getBooksSorted((String) cbSort.getSelectedItem());
-        model.setRowCount(0);
-        for (Book b : view) {
-            model.addRow(new Object[]{b.getId(), b.getTitle(), b.getAuthor(), b.getYear(), b.getStockTotal(), b.getStockAvail()});
-        }
-        applyFilter();
+        // pencarian yang masih antre/berjalan sudah basi terhadap refresh ini
+        searchTimer.stop();
+        cancelPendingSearch();
+        model.setRows(query(tfSearch.getText(), MATCH_FUZZY.equals(cbMatch.getSelectedItem()),
+                (String) cbSort.getSelectedItem()));
+    }
+
+    // hanya baris yang cocok dengan indeks pencarian yang masuk model
+    private List<Book> query(String text, boolean fuzzy, String sortMode) {
+        return fuzzy ? service.searchBooksFuzzy(text) : service.searchBooks(text, sortMode);
+    }
+
+    private void searchInBackground() {
+        String text = tfSearch.getText();
+        boolean fuzzy = MATCH_FUZZY.equals(cbMatch.getSelectedItem());
+        String sortMode = (String) cbSort.getSelectedItem();
+
+        int gen = cancelPendingSearch();
+        pendingSearch = SEARCH_EXEC.submit(() -> {
+            if (gen != searchGen) return;
+            List<Book> view = query(text, fuzzy, sortMode);
+            SwingUtilities.invokeLater(() -> {
+                if (gen == searchGen) model.setRows(view);
+            });
+        });
     }
 
-    private void applyFilter() {
-        String key = tfSearch.getText().trim();
-        if (key.isEmpty()) sorter.setRowFilter(null);
-        else sorter.setRowFilter(RowFilter.regexFilter("(?i)" + Pattern.quote(key)));
+    private int cancelPendingSearch() {
+        if (pendingSearch != null) pendingSearch.cancel(false);
+        pendingSearch = null;
+        return ++searchGen;
+    }
+
+    /**
+     * Terapkan satu perubahan ke baris yang bersangkutan saja, tanpa membangun ulang model:
+     * baris yang tidak lagi cocok dengan pencarian dibuang, yang baru/berubah ditempatkan di
+     * posisi urut mode Sort yang aktif.
+     */
+    public void apply(LibraryEvent e) {
+        if (e.getType() == LibraryEvent.Type.BOOK_REMOVED) {
+            int r = model.rowOf(e.getBookId());
+            if (r >= 0) model.remove(r);
+            return;
+        }
+
+        String text = tfSearch.getText();
+        boolean fuzzy = MATCH_FUZZY.equals(cbMatch.getSelectedItem());
+        Book b = e.getBook();
+        int r = model.rowOf(e.getBookId());
+        if (fuzzy && !text.trim().isEmpty()) {
+            // peringkat fuzzy bergantung judul/penulis; pinjam/kembali hanya mengubah stok
+            if (e.getType() == LibraryEvent.Type.BOOK_ADDED || e.getType() == LibraryEvent.Type.BOOK_UPDATED) refresh();
+            else if (r >= 0) model.updated(r);
+            return;
+        }
+
+        if (b == null || !service.matchesSearch(text, b)) {
+            if (r >= 0) model.remove(r);
+            return;
+        }
+        // fuzzy dengan query kosong = semua buku urutan masuk, Sort diabaikan
+        String mode = fuzzy ? null : (String) cbSort.getSelectedItem();
+        model.place(r, b, service.bookOrder(mode));
     }
 
     private String selectedBookId() {
-        int viewRow = table.getSelectedRow();
-        if (viewRow < 0) return null;
-        int modelRow = table.convertRowIndexToModel(viewRow);
-        return model.getValueAt(modelRow, 0).toString();
+        // tanpa RowSorter: urutan tabel = urutan model (diatur cbSort / apply)
+        int row = table.getSelectedRow();
+        return row < 0 ? null : model.getRow(row).getId();
+    }
+
+    private List<String> selectedBookIds() {
+        List<String> ids = new ArrayList<>();
+        for (int row : table.getSelectedRows()) ids.add(model.getRow(row).getId());
+        return ids;
     }
 
     private void deleteSelected() {
@@ -150,9 +229,8 @@ public class BooksPage extends JPanel {
 
         try {
             service.deleteBook(id);
-            service.save();
+            actions.saveInBackground();
             actions.setStatus("Buku " + id + " berhasil dihapus.", false);
-            actions.refreshAll();
         } catch (Exception ex) {
             actions.setStatus("Gagal hapus: " + ex.getMessage(), true);
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -160,26 +238,29 @@ public class BooksPage extends JPanel {
     }
 
     private void borrowSelected() {
-        String id = selectedBookId();
-        if (id == null) {
+        List<String> ids = selectedBookIds();
+        if (ids.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Pilih buku yang ingin dipinjam.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        String borrower = JOptionPane.showInputDialog(this, "Nama Peminjam:");
+        String borrower = askBorrower(ids.size());
         if (borrower == null) return;
 
         try {
-            Loan created = service.borrowBook(id, borrower);
-            service.save();
-            actions.setStatus("Berhasil meminjam buku " + id + ".", false);
-            actions.refreshAll();
-
+            // satu batch: semua berhasil atau tidak ada yang dipinjam, lalu save sekali
+            List<Loan> created = service.borrowBooks(borrower, ids);
+            actions.saveInBackground();
+            actions.setStatus(ids.size() == 1
+                    ? "Berhasil meminjam buku " + ids.get(0) + "."
+                    : "Berhasil meminjam " + ids.size() + " buku.", false);
+
+            Loan first = created.get(0);
             JOptionPane.showMessageDialog(
                     this,
-                    "Berhasil meminjam.\n" +
-                            "Tanggal Pinjam : " + created.getBorrowDate() + "\n" +
-                            "Jatuh Tempo    : " + created.getDueDate() + " (7 hari)\n" +
+                    "Berhasil meminjam" + (created.size() > 1 ? " " + created.size() + " buku" : "") + ".\n" +
+                            "Tanggal Pinjam : " + first.getBorrowDate() + "\n" +
+                            "Jatuh Tempo    : " + first.getDueDate() + " (7 hari)\n" +
                             "Denda          : " + UiKit.rupiah(LibraryService.FINE_PER_DAY) + " / hari telat",
                     "Info Pinjaman",
                     JOptionPane.INFORMATION_MESSAGE
@@ -190,6 +271,66 @@ public class BooksPage extends JPanel {
         }
     }
 
+    // input nama peminjam + saran nama terdaftar (trie di service) + ringkasan pinjaman/dendanya
+    private String askBorrower(int count) {
+        JTextField tf = UiKit.field(22);
+        DefaultListModel<String> hints = new DefaultListModel<>();
+        JList<String> list = new JList<>(hints);
+        list.setVisibleRowCount(6);
+        JLabel ledger = new JLabel(" ");
+        ledger.setForeground(Theme.MUTED);
+
+        Runnable update = () -> {
+            String typed = tf.getText();
+            hints.clear();
+            if (!typed.trim().isEmpty()) {
+                for (String name : service.suggestBorrowers(typed, 8)) hints.addElement(name);
+            }
+            int active = service.getBorrowerLoans(typed).size();
+            long fine = service.borrowerFines(typed);
+            ledger.setText(active == 0 && fine == 0 ? " "
+                    : "Sedang meminjam " + active + " buku, denda " + UiKit.rupiah(fine));
+        };
+        tf.getDocument().addDocumentListener(new SimpleDocListener(update));
+        list.addListSelectionListener(e -> {
+            String picked = list.getSelectedValue();
+            // diisi belakangan: mengubah teks memicu update() yang mengosongkan list ini
+            if (!e.getValueIsAdjusting() && picked != null) SwingUtilities.invokeLater(() -> tf.setText(picked));
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(6, 6));
+        panel.add(new JLabel(count == 1 ? "Nama Peminjam:" : "Nama Peminjam (" + count + " buku):"), BorderLayout.NORTH);
+        JPanel center = new JPanel(new BorderLayout(6, 6));
+        center.add(tf, BorderLayout.NORTH);
+        center.add(new JScrollPane(list), BorderLayout.CENTER);
+        panel.add(center, BorderLayout.CENTER);
+        panel.add(ledger, BorderLayout.SOUTH);
+
+        int ok = JOptionPane.showConfirmDialog(this, panel, "Pinjam", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        return ok == JOptionPane.OK_OPTION ? tf.getText() : null;
+    }
+
+    private void showBorrowers() {
+        String id = selectedBookId();
+        if (id == null) {
+            JOptionPane.showMessageDialog(this, "Pilih buku di tabel dulu.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        List<Loan> active = service.getActiveLoans(id);
+        if (active.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Buku " + id + " tidak sedang dipinjam.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder("Buku " + id + " sedang dipinjam oleh:\n");
+        for (Loan l : active) {
+            sb.append("- ").append(l.getBorrower())
+                    .append(" (").append(l.getTrxId()).append(", jatuh tempo ").append(l.getDueDate()).append(")\n");
+        }
+        JOptionPane.showMessageDialog(this, sb.toString(), "Peminjam Aktif", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     static class SimpleDocListener implements javax.swing.event.DocumentListener {
         private final Runnable r;
         SimpleDocListener(Runnable r) { this.r = r; }
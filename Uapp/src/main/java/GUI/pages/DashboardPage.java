@@ -10,6 +10,10 @@ import java.awt.*;
 public class DashboardPage extends JPanel {
     private final JLabel totalBuku = new JLabel("0");
     private final JLabel dipinjam = new JLabel("0");
+    private final JLabel judul = new JLabel("0");
+    private final JLabel habis = new JLabel("0");
+    private final JLabel telat = new JLabel("0");
+    private final JLabel denda = new JLabel("Rp 0");
     private final JLabel lokasi = new JLabel("-");
 
     public DashboardPage() {
@@ -21,11 +25,15 @@ public class DashboardPage extends JPanel {
         title.setFont(Theme.H1);
         title.setForeground(Theme.TEXT);
 
-        JPanel cards = new JPanel(new GridLayout(1, 2, 12, 12));
+        JPanel cards = new JPanel(new GridLayout(2, 3, 12, 12));
         cards.setOpaque(false);
 
         cards.add(statCard("Total Buku (Eksemplar)", totalBuku));
         cards.add(statCard("Sedang Dipinjam", dipinjam));
+        cards.add(statCard("Judul Berbeda", judul));
+        cards.add(statCard("Buku Habis (Tersedia 0)", habis));
+        cards.add(statCard("Telat Dikembalikan", telat));
+        cards.add(statCard("Denda Berjalan", denda));
 
         JPanel note = UiKit.card();
         note.setLayout(new BorderLayout(8, 8));
@@ -72,9 +80,14 @@ public class DashboardPage extends JPanel {
         return card;
     }
 
-    public void setStats(int totalCopies, long borrowedCount, String fileLocation) {
+    public void setStats(int totalCopies, long borrowedCount, int distinctTitles, int unavailableBooks,
+                         long overdueCount, long outstandingFines, String fileLocation) {
         totalBuku.setText(String.valueOf(totalCopies));
         dipinjam.setText(String.valueOf(borrowedCount));
+        judul.setText(String.valueOf(distinctTitles));
+        habis.setText(String.valueOf(unavailableBooks));
+        telat.setText(String.valueOf(overdueCount));
+        denda.setText(UiKit.rupiah(outstandingFines));
         lokasi.setText(fileLocation);
     }
 }
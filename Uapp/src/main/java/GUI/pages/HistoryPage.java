@@ -4,22 +4,60 @@ import GUI.AppActions;
 import GUI.Theme;
 import GUI.UiKit;
 import model.Loan;
+import service.LibraryEvent;
 import service.LibraryService;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HistoryPage extends JPanel {
 
+    private static final String FILTER_OVERDUE = "Overdue";
+
+    // baris per halaman; halaman berikutnya dimuat saat sisa baris di bawah layar tinggal PREFETCH_ROWS
+    private static final int PAGE_SIZE = 200;
+    private static final int PREFETCH_ROWS = 50;
+
+    // satu thread untuk halaman berikutnya (bisa membaca segmen arsip dari disk)
+    private static final ExecutorService PAGE_EXEC = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "history-page");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final LibraryService service;
     private final AppActions actions;
 
-    private final DefaultTableModel model;
+    private final LoanTableModel model;
     private final JTable table;
     private final JComboBox<String> cbFilter;
+    private final JCheckBox cbFrom;
+    private final JCheckBox cbTo;
+    private final JSpinner spFrom;
+    private final JSpinner spTo;
+    private final JTextField tfBorrower;
+
+    // filter yang sedang tampil: halaman berikutnya dan event memakai ini, bukan isi field yang mungkin sedang diketik
+    private boolean overdueView;
+    private String qStatus;
+    private LocalDate qFrom;
+    private LocalDate qTo;
+    private String qBorrower;
+
+    private boolean exhausted = true;   // semua baris yang cocok sudah ada di model
+    private boolean loading;
+    private int pageGen = 0;            // naik tiap refresh; halaman milik query lama dibuang
+    private List<LibraryEvent> heldEvents;  // != null selama halaman pertama dimuat
 
     public HistoryPage(LibraryService service, AppActions actions) {
         this.service = service;
@@ -38,9 +76,18 @@ public class HistoryPage extends JPanel {
         JPanel tools = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
         tools.setOpaque(false);
 
-        cbFilter = new JComboBox<>(new String[]{"Semua", Loan.BORROWED, Loan.RETURNED});
+        cbFilter = new JComboBox<>(new String[]{"Semua", Loan.BORROWED, Loan.RETURNED, FILTER_OVERDUE});
         cbFilter.addActionListener(e -> refresh());
 
+        // batas tanggal pinjam hanya dipakai bila dicentang; spinner menolak tanggal yang tidak valid
+        cbFrom = new JCheckBox("Dari:");
+        cbTo = new JCheckBox("Sampai:");
+        spFrom = dateSpinner(cbFrom, "Tanggal pinjam dari (yyyy-MM-dd)");
+        spTo = dateSpinner(cbTo, "Tanggal pinjam sampai (yyyy-MM-dd)");
+        tfBorrower = new JTextField(10);
+        tfBorrower.setToolTipText("Awalan nama peminjam");
+        tfBorrower.addActionListener(e -> refresh());
+
         JButton btnReturn = new JButton("Kembalikan");
         JButton btnRefresh = new JButton("Refresh");
         UiKit.primary(btnReturn);
@@ -51,75 +98,232 @@ public class HistoryPage extends JPanel {
 
         tools.add(new JLabel("Filter:"));
         tools.add(cbFilter);
+        tools.add(cbFrom);
+        tools.add(spFrom);
+        tools.add(cbTo);
+        tools.add(spTo);
+        tools.add(new JLabel("Peminjam:"));
+        tools.add(tfBorrower);
         tools.add(btnReturn);
         tools.add(btnRefresh);
 
         top.add(title, BorderLayout.NORTH);
         top.add(tools, BorderLayout.CENTER);
 
-        model = new DefaultTableModel(new Object[]{
-                "TRX ID", "Book ID", "Judul", "Peminjam",
-                "Tgl Pinjam", "Jatuh Tempo", "Tgl Kembali", "Status", "Denda"
-        }, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        model = new LoanTableModel(service);
 
         table = new JTable(model);
         UiKit.styleTable(table);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
         JScrollPane scroll = new JScrollPane(table);
         scroll.setBorder(BorderFactory.createLineBorder(Theme.BORDER));
 
+        JScrollBar bar = scroll.getVerticalScrollBar();
+        bar.addAdjustmentListener(e -> {
+            if (bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - PREFETCH_ROWS * table.getRowHeight()) {
+                loadMore();
+            }
+        });
+
         add(top, BorderLayout.NORTH);
         add(scroll, BorderLayout.CENTER);
     }
 
+    // spinner tanggal yyyy-MM-dd; ketikan yang bukan tanggal valid diwarnai merah dan tidak diterapkan
+    private JSpinner dateSpinner(JCheckBox toggle, String tip) {
+        JSpinner sp = new JSpinner(new SpinnerDateModel(new Date(), null, null, Calendar.DAY_OF_MONTH));
+        JSpinner.DateEditor editor = new JSpinner.DateEditor(sp, "yyyy-MM-dd");
+        sp.setEditor(editor);
+        SimpleDateFormat format = editor.getFormat();
+        format.setLenient(false);   // 2024-02-31 ditolak, bukan digeser ke Maret
+
+        JFormattedTextField tf = editor.getTextField();
+        tf.setColumns(8);
+        tf.setToolTipText(tip);
+        tf.addPropertyChangeListener("editValid", e -> {
+            boolean valid = Boolean.TRUE.equals(e.getNewValue());
+            tf.setForeground(valid ? Theme.TEXT : Color.RED);
+            tf.setToolTipText(valid ? tip : "Format tanggal harus yyyy-MM-dd");
+        });
+
+        sp.setEnabled(false);
+        toggle.setOpaque(false);
+        toggle.addActionListener(e -> {
+            sp.setEnabled(toggle.isSelected());
+            refresh();
+        });
+        sp.addChangeListener(e -> {
+            if (toggle.isSelected()) refresh();
+        });
+        return sp;
+    }
+
+    private static LocalDate dateOf(JCheckBox toggle, JSpinner sp) {
+        if (!toggle.isSelected()) return null;
+        return ((Date) sp.getValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /** Muat ulang dari halaman pertama; biayanya sebesar satu halaman, bukan sebanyak loan. */
     public void refresh() {
+        LocalDate from = dateOf(cbFrom, spFrom);
+        LocalDate to = dateOf(cbTo, spTo);
+        if (from != null && to != null && from.isAfter(to)) {
+            actions.setStatus("Tanggal 'Dari' tidak boleh sesudah 'Sampai'.", true);
+            return;
+        }
+
         String filter = (String) cbFilter.getSelectedItem();
-        model.setRowCount(0);
+        overdueView = FILTER_OVERDUE.equals(filter);
+        qStatus = "Semua".equals(filter) || overdueView ? null : filter;
+        qFrom = from;
+        qTo = to;
+        qBorrower = tfBorrower.getText().trim();
+        pageGen++;
+        loading = false;
+        heldEvents = null;
 
         LocalDate today = LocalDate.now();
+        model.setToday(today);
+
+        if (overdueView) {
+            // langsung dari indeks jatuh tempo (di memori, hanya loan aktif), tidak dipaging
+            List<Loan> rows = new ArrayList<>();
+            for (Loan l : service.getOverdueLoans(today)) {
+                if (service.matchesLoanQuery(l, null, qFrom, qTo, qBorrower)) rows.add(l);
+            }
+            exhausted = true;
+            model.setRows(rows);
+            return;
+        }
 
-        for (Loan l : service.getLoans()) {
-            if (!"Semua".equals(filter) && !l.getStatus().equals(filter)) continue;
-
-            long dendaTampil = service.currentFineIfLate(l, today);
-
-            model.addRow(new Object[]{
-                    l.getTrxId(),
-                    l.getBookId(),
-                    l.getBookTitle(),
-                    l.getBorrower(),
-                    l.getBorrowDate().toString(),
-                    l.getDueDate().toString(),
-                    l.getReturnDate() == null ? "-" : l.getReturnDate().toString(),
-                    l.getStatus(),
-                    UiKit.rupiah(dendaTampil)
-            });
+        // halaman pertama juga di luar EDT: sesudah load/arsip indeks tanggal dibangun ulang,
+        // dan segmen arsip bisa dibaca dari disk. Baris lama tetap tampil sampai halaman tiba.
+        loading = true;
+        heldEvents = new ArrayList<>();
+        int gen = pageGen;
+        String status = qStatus;
+        String borrower = qBorrower;
+        PAGE_EXEC.submit(() -> {
+            try {
+                List<Loan> page = service.queryLoans(status, from, to, borrower, 0, PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> firstPageLoaded(gen, page));
+            } catch (Exception ex) {
+                SwingUtilities.invokeLater(() -> {
+                    actions.setStatus("Gagal baca arsip: " + ex.getMessage(), true);
+                    firstPageLoaded(gen, new ArrayList<>());
+                });
+            }
+        });
+    }
+
+    private void firstPageLoaded(int gen, List<Loan> page) {
+        if (gen != pageGen) return;
+        loading = false;
+        exhausted = page.size() < PAGE_SIZE;
+        // model hanya memegang referensi loan; sel dibaca/diformat saat digambar
+        model.setRows(page);
+
+        // event yang datang selama query mungkin belum terlihat di halaman: terapkan sekarang
+        List<LibraryEvent> held = heldEvents;
+        heldEvents = null;
+        for (LibraryEvent e : held) apply(e);
+    }
+
+    // halaman berikutnya dimulai sesudah baris terakhir (keyset), jadi baris baru di atas tidak menggeser apa pun
+    private void loadMore() {
+        if (loading || exhausted || model.getRowCount() == 0) return;
+        loading = true;
+
+        int gen = pageGen;
+        Loan after = model.getRow(model.getRowCount() - 1);
+        String status = qStatus;
+        LocalDate from = qFrom;
+        LocalDate to = qTo;
+        String borrower = qBorrower;
+
+        PAGE_EXEC.submit(() -> {
+            try {
+                List<Loan> page = service.queryLoansAfter(status, from, to, borrower, after, PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != pageGen) return;
+                    loading = false;
+                    exhausted = page.size() < PAGE_SIZE;
+                    model.appendAll(page);
+                });
+            } catch (Exception ex) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != pageGen) return;
+                    loading = false;
+                    exhausted = true;
+                    actions.setStatus("Gagal baca arsip: " + ex.getMessage(), true);
+                });
+            }
+        });
+    }
+
+    /** Pinjam/kembali: tambah, ubah, atau buang satu baris sesuai filter, tanpa membangun ulang model. */
+    public void apply(LibraryEvent e) {
+        Loan l = e.getLoan();
+        if (l == null) return;
+        if (e.getType() != LibraryEvent.Type.LOAN_CREATED && e.getType() != LibraryEvent.Type.LOAN_RETURNED) return;
+        if (heldEvents != null) {
+            heldEvents.add(e);
+            return;
+        }
+
+        int r = model.rowOf(l.getTrxId());
+        if (overdueView) {
+            // loan baru belum telat; yang dikembalikan keluar dari daftar
+            if (e.getType() == LibraryEvent.Type.LOAN_RETURNED && r >= 0) model.remove(r);
+            return;
+        }
+
+        boolean match = service.matchesLoanQuery(l, qStatus, qFrom, qTo, qBorrower);
+        if (r >= 0) {
+            if (match) model.updated(r);
+            else model.remove(r);
+            return;
         }
+        if (!match) return;
+
+        // sisipkan di posisi urutnya; yang jatuh sesudah baris terakhir ikut terbawa halaman berikutnya
+        int at = model.insertionPoint(l, LibraryService.HISTORY_ORDER);
+        if (at == model.getRowCount() && !exhausted) return;
+        model.insert(at, l);
     }
 
     private void returnSelected() {
-        String trxId = selectedTrxId();
-        if (trxId == null) {
+        List<String> trxIds = selectedTrxIds();
+        if (trxIds.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Pilih transaksi dulu.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
         try {
-            Loan updated = service.returnBook(trxId);
-            service.save();
+            List<Loan> updated = service.returnBooks(trxIds);
+            actions.saveInBackground();
 
-            actions.setStatus("Transaksi " + trxId + " berhasil dikembalikan.", false);
-            actions.refreshAll();
+            actions.setStatus(trxIds.size() == 1
+                    ? "Transaksi " + trxIds.get(0) + " berhasil dikembalikan."
+                    : trxIds.size() + " transaksi berhasil dikembalikan.", false);
+
+            long totalFine = 0;
+            StringBuilder late = new StringBuilder();
+            for (Loan l : updated) {
+                if (l.getFine() <= 0) continue;
+                totalFine += l.getFine();
+                late.append(l.getTrxId()).append("  jatuh tempo ").append(l.getDueDate())
+                        .append("  denda ").append(UiKit.rupiah(l.getFine())).append("\n");
+            }
 
-            if (updated.getFine() > 0) {
+            if (totalFine > 0) {
                 JOptionPane.showMessageDialog(
                         this,
                         "Pengembalian terlambat!\n" +
-                                "Jatuh Tempo : " + updated.getDueDate() + "\n" +
-                                "Kembali     : " + updated.getReturnDate() + "\n" +
-                                "Denda       : " + UiKit.rupiah(updated.getFine()),
+                                late +
+                                "Kembali     : " + updated.get(0).getReturnDate() + "\n" +
+                                "Total Denda : " + UiKit.rupiah(totalFine),
                         "Denda Keterlambatan",
                         JOptionPane.WARNING_MESSAGE
                 );
@@ -133,10 +337,9 @@ public class HistoryPage extends JPanel {
         }
     }
 
-    private String selectedTrxId() {
-        int viewRow = table.getSelectedRow();
-        if (viewRow < 0) return null;
-        int modelRow = table.convertRowIndexToModel(viewRow);
-        return model.getValueAt(modelRow, 0).toString();
+    private List<String> selectedTrxIds() {
+        List<String> ids = new ArrayList<>();
+        for (int row : table.getSelectedRows()) ids.add(model.getRow(row).getTrxId());
+        return ids;
     }
 }
@@ -0,0 +1,41 @@
+package GUI.pages;
+
+import GUI.UiKit;
+import model.Loan;
+import service.LibraryService;
+
+import java.time.LocalDate;
+
+class LoanTableModel extends RecordTableModel<Loan> {
+
+    private final LibraryService service;
+    private LocalDate today = LocalDate.now();
+
+    LoanTableModel(LibraryService service) {
+        super("TRX ID", "Book ID", "Judul", "Peminjam",
+                "Tgl Pinjam", "Jatuh Tempo", "Tgl Kembali", "Status", "Denda");
+        this.service = service;
+    }
+
+    /** Tanggal acuan denda berjalan pada kolom Denda. */
+    void setToday(LocalDate today) {
+        this.today = today;
+    }
+
+    @Override String idOf(Loan l) { return l.getTrxId(); }
+
+    @Override
+    Object valueOf(Loan l, int column) {
+        switch (column) {
+            case 0: return l.getTrxId();
+            case 1: return l.getBookId();
+            case 2: return l.getBookTitle();
+            case 3: return l.getBorrower();
+            case 4: return l.getBorrowDate().toString();
+            case 5: return l.getDueDate().toString();
+            case 6: return l.getReturnDate() == null ? "-" : l.getReturnDate().toString();
+            case 7: return l.getStatus();
+            default: return UiKit.rupiah(service.currentFineIfLate(l, today));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package GUI.pages;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+/**
+ * Model tabel yang hanya memegang referensi record; isi sel dibaca (dan diformat) saat JTable
+ * memintanya, jadi yang tergambar hanya baris yang terlihat. Perubahan memicu event baris
+ * yang tepat, bukan fireTableDataChanged.
+ */
+abstract class RecordTableModel<T> extends AbstractTableModel {
+
+    // insert/remove di tengah yang ditoleransi sebelum rowById diindeks ulang penuh
+    private static final int MAX_DRIFT = 64;
+
+    private final String[] columns;
+    private List<T> rows = new ArrayList<>();
+
+    // id (huruf besar) -> baris saat diindeks. rows[indexed..] belum masuk peta; sesudah insert/remove
+    // di tengah, baris yang sudah diindeks bergeser paling jauh `drift` posisi dari nilai di peta
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private int indexed;
+    private int drift;
+
+    RecordTableModel(String... columns) {
+        this.columns = columns;
+    }
+
+    abstract String idOf(T record);
+
+    abstract Object valueOf(T record, int column);
+
+    /** Ganti seluruh isi; list dipakai apa adanya (tidak disalin), jadi jangan diubah dari luar. */
+    void setRows(List<T> rows) {
+        this.rows = rows;
+        rowById.clear();
+        indexed = 0;
+        drift = 0;
+        fireTableDataChanged();
+    }
+
+    T getRow(int row) {
+        return rows.get(row);
+    }
+
+    void append(T record) {
+        if (!(rows instanceof ArrayList)) rows = new ArrayList<>(rows);
+        rows.add(record);
+        int r = rows.size() - 1;
+        fireTableRowsInserted(r, r);
+    }
+
+    void insert(int row, T record) {
+        if (!(rows instanceof ArrayList)) rows = new ArrayList<>(rows);
+        rows.add(row, record);
+        if (row < indexed) {
+            rowById.put(key(idOf(record)), row);
+            indexed++;
+            drift++;
+        }
+        fireTableRowsInserted(row, row);
+    }
+
+    /** Tambah satu halaman di akhir dengan satu event. */
+    void appendAll(List<T> records) {
+        if (records.isEmpty()) return;
+        if (!(rows instanceof ArrayList)) rows = new ArrayList<>(rows);
+        int first = rows.size();
+        rows.addAll(records);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    void remove(int row) {
+        if (!(rows instanceof ArrayList)) rows = new ArrayList<>(rows);
+        T removed = rows.remove(row);
+        if (row < indexed) {
+            rowById.remove(key(idOf(removed)));
+            indexed--;
+            drift++;
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Pasang record di posisi urutnya; rows harus sudah urut menurut order. row = baris lama
+     * record ini (-1 bila belum ada): bila masih di tempat yang benar cukup diperbarui isinya,
+     * bila tidak dipindah ke posisi hasil binary search.
+     */
+    void place(int row, T record, Comparator<? super T> order) {
+        if (row >= 0) {
+            boolean afterPrev = row == 0 || order.compare(rows.get(row - 1), record) <= 0;
+            boolean beforeNext = row == rows.size() - 1 || order.compare(record, rows.get(row + 1)) <= 0;
+            if (afterPrev && beforeNext) {
+                updated(row);
+                return;
+            }
+            remove(row);
+        }
+        insert(insertionPoint(record, order), record);
+    }
+
+    /** Posisi sisip record (sesudah yang setara) dengan binary search; rows harus urut menurut order. */
+    int insertionPoint(T record, Comparator<? super T> order) {
+        int lo = 0, hi = rows.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (order.compare(rows.get(mid), record) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    void updated(int row) {
+        fireTableRowsUpdated(row, row);
+    }
+
+    /** Baris record ber-id ini, -1 bila tidak ada. Lewat peta id, bukan scan seluruh baris. */
+    int rowOf(String id) {
+        if (drift > MAX_DRIFT) {
+            rowById.clear();
+            indexed = 0;
+            drift = 0;
+        }
+        // baris yang di-append/di-setRows diindeks saat pertama dibutuhkan
+        for (; indexed < rows.size(); indexed++) rowById.put(key(idOf(rows.get(indexed))), indexed);
+
+        Integer at = rowById.get(key(id));
+        if (at == null) return -1;
+        for (int d = 0; d <= drift; d++) {
+            if (matches(at + d, id)) return at + d;
+            if (d > 0 && matches(at - d, id)) return at - d;
+        }
+        return -1;
+    }
+
+    private boolean matches(int row, String id) {
+        return row >= 0 && row < rows.size() && idOf(rows.get(row)).equalsIgnoreCase(id);
+    }
+
+    // id buku/transaksi sudah huruf besar, jadi toUpperCase biasanya tidak membuat string baru
+    private static String key(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return columns.length; }
+    @Override public String getColumnName(int column) { return columns[column]; }
+    @Override public boolean isCellEditable(int r, int c) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return valueOf(rows.get(row), column);
+    }
+}
@@ -0,0 +1,219 @@
+package data;
+
+import model.Book;
+import model.Loan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot biner books+loans untuk cold start cepat. books.txt/loans.txt tetap format utama.
+ *
+ * Layout (big-endian):
+ *   header : magic "LIBS", version, jumlah string, jumlah buku, jumlah loan
+ *   block* : tipe(1) | jumlah record | panjang payload | payload | crc32(payload)
+ *
+ * Tipe block: S = kamus string (UTF-8, panjang 2 byte), B = buku (24 byte/record),
+ * L = loan (40 byte/record, dipecah per {@link #LOANS_PER_BLOCK}). Semua teks disimpan
+ * sebagai indeks ke kamus, tanggal sebagai epoch day.
+ */
+class BinarySnapshot {
+
+    private static final int MAGIC = 0x4C494253; // "LIBS"
+    private static final int VERSION = 1;
+
+    private static final byte BLOCK_STRINGS = 'S';
+    private static final byte BLOCK_BOOKS = 'B';
+    private static final byte BLOCK_LOANS = 'L';
+
+    private static final int BOOK_BYTES = 6 * 4;
+    private static final int LOAN_BYTES = 8 * 4 + 8;
+    private static final int LOANS_PER_BLOCK = 65536;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private BinarySnapshot() {}
+
+    static byte[] encode(List<Book> books, List<Loan> loans) throws IOException {
+        Map<String, Integer> dict = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+
+        ByteBuffer bookBuf = ByteBuffer.allocate(books.size() * BOOK_BYTES);
+        for (Book b : books) {
+            bookBuf.putInt(ref(b.getId(), dict, strings));
+            bookBuf.putInt(ref(b.getTitle(), dict, strings));
+            bookBuf.putInt(ref(b.getAuthor(), dict, strings));
+            bookBuf.putInt(b.getYear());
+            bookBuf.putInt(b.getStockTotal());
+            bookBuf.putInt(b.getStockAvail());
+        }
+
+        List<ByteBuffer> loanBlocks = new ArrayList<>();
+        for (int from = 0; from < loans.size(); from += LOANS_PER_BLOCK) {
+            int to = Math.min(loans.size(), from + LOANS_PER_BLOCK);
+            ByteBuffer lb = ByteBuffer.allocate((to - from) * LOAN_BYTES);
+            for (int i = from; i < to; i++) {
+                Loan l = loans.get(i);
+                lb.putInt(ref(l.getTrxId(), dict, strings));
+                lb.putInt(ref(l.getBookId(), dict, strings));
+                lb.putInt(ref(l.getBookTitle(), dict, strings));
+                lb.putInt(ref(l.getBorrower(), dict, strings));
+                lb.putInt(day(l.getBorrowDate()));
+                lb.putInt(day(l.getDueDate()));
+                lb.putInt(day(l.getReturnDate()));
+                lb.putInt(ref(l.getStatus(), dict, strings));
+                lb.putLong(l.getFine());
+            }
+            loanBlocks.add(lb);
+        }
+
+        ByteArrayOutputStream dictBytes = new ByteArrayOutputStream(strings.size() * 12);
+        DataOutputStream dictOut = new DataOutputStream(dictBytes);
+        for (String s : strings) {
+            byte[] u = s.getBytes(StandardCharsets.UTF_8);
+            if (u.length > 0xFFFF) throw new IOException("Teks terlalu panjang untuk snapshot");
+            dictOut.writeShort(u.length);
+            dictOut.write(u);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + dictBytes.size()
+                + bookBuf.position() + loans.size() * LOAN_BYTES + loanBlocks.size() * 13);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        out.writeInt(books.size());
+        out.writeInt(loans.size());
+
+        writeBlock(out, BLOCK_STRINGS, strings.size(), dictBytes.toByteArray(), dictBytes.size());
+        writeBlock(out, BLOCK_BOOKS, books.size(), bookBuf.array(), bookBuf.position());
+        for (ByteBuffer lb : loanBlocks) {
+            writeBlock(out, BLOCK_LOANS, lb.position() / LOAN_BYTES, lb.array(), lb.position());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Isi books & loans dari snapshot. Melempar exception bila versi/CRC tidak cocok. */
+    static void read(Path file, List<Book> books, List<Loan> loans) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Snapshot terlalu besar");
+            // dibaca ke heap, bukan di-mmap: mapping yang masih hidup mengunci file di Windows
+            ByteBuffer buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) throw new IOException("Snapshot terpotong");
+            }
+            buf.flip();
+
+            if (buf.getInt() != MAGIC) throw new IOException("Bukan file snapshot");
+            if (buf.getInt() != VERSION) throw new IOException("Versi snapshot tidak didukung");
+            int stringCount = buf.getInt();
+            int bookCount = buf.getInt();
+            int loanCount = buf.getInt();
+            // jumlah di header tidak dilindungi CRC: batasi dengan ukuran file sebelum dipakai untuk alokasi
+            long minBytes = 2L * stringCount + (long) bookCount * BOOK_BYTES + (long) loanCount * LOAN_BYTES;
+            if (stringCount < 0 || bookCount < 0 || loanCount < 0 || minBytes > buf.remaining()) {
+                throw new IOException("Header snapshot rusak");
+            }
+
+            String[] strings = new String[stringCount];
+            ByteBuffer s = block(buf, BLOCK_STRINGS);
+            byte[] raw = new byte[s.remaining()];
+            s.get(raw);
+            for (int i = 0, p = 0; i < stringCount; i++) {
+                int len = ((raw[p] & 0xFF) << 8) | (raw[p + 1] & 0xFF);
+                strings[i] = new String(raw, p + 2, len, StandardCharsets.UTF_8);
+                p += 2 + len;
+            }
+
+            ByteBuffer b = block(buf, BLOCK_BOOKS);
+            List<Book> bookOut = new ArrayList<>(bookCount);
+            for (int i = 0; i < bookCount; i++) {
+                bookOut.add(new Book(strings[b.getInt()], strings[b.getInt()], strings[b.getInt()],
+                        b.getInt(), b.getInt(), b.getInt()));
+            }
+
+            Map<Integer, LocalDate> dates = new HashMap<>();
+            List<Loan> loanOut = new ArrayList<>(loanCount);
+            while (loanOut.size() < loanCount) {
+                ByteBuffer l = block(buf, BLOCK_LOANS);
+                while (l.hasRemaining()) {
+                    String trxId = strings[l.getInt()];
+                    String bookId = strings[l.getInt()];
+                    String title = strings[l.getInt()];
+                    String borrower = strings[l.getInt()];
+                    LocalDate borrowDate = date(l.getInt(), dates);
+                    LocalDate dueDate = date(l.getInt(), dates);
+                    LocalDate returnDate = date(l.getInt(), dates);
+                    String status = strings[l.getInt()];
+                    long fine = l.getLong();
+                    loanOut.add(new Loan(trxId, bookId, title, borrower, borrowDate, dueDate, returnDate, status, fine));
+                }
+            }
+
+            books.addAll(bookOut);
+            loans.addAll(loanOut);
+        } catch (RuntimeException e) {
+            // indeks kamus di luar batas, buffer habis, dll -> snapshot rusak
+            throw new IOException("Snapshot rusak: " + e, e);
+        }
+    }
+
+    private static void writeBlock(DataOutputStream out, byte type, int count, byte[] payload, int len) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, len);
+        out.writeByte(type);
+        out.writeInt(count);
+        out.writeInt(len);
+        out.write(payload, 0, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static ByteBuffer block(ByteBuffer buf, byte expectedType) throws IOException {
+        byte type = buf.get();
+        if (type != expectedType) throw new IOException("Block snapshot tidak terduga: " + (char) type);
+        buf.getInt(); // jumlah record, panjang payload sudah cukup untuk membaca
+        int len = buf.getInt();
+
+        ByteBuffer payload = buf.slice();
+        payload.limit(len);
+        buf.position(buf.position() + len);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buf.getInt()) throw new IOException("CRC snapshot tidak cocok");
+        return payload;
+    }
+
+    private static int ref(String s, Map<String, Integer> dict, List<String> strings) {
+        String key = s == null ? "" : s;
+        Integer idx = dict.get(key);
+        if (idx == null) {
+            idx = strings.size();
+            dict.put(key, idx);
+            strings.add(key);
+        }
+        return idx;
+    }
+
+    private static int day(LocalDate d) {
+        return d == null ? NO_DATE : (int) d.toEpochDay();
+    }
+
+    private static LocalDate date(int day, Map<Integer, LocalDate> cache) {
+        if (day == NO_DATE) return null;
+        LocalDate d = cache.get(day);
+        if (d == null) {
+            d = LocalDate.ofEpochDay(day);
+            cache.put(day, d);
+        }
+        return d;
+    }
+}
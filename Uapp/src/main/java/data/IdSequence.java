@@ -0,0 +1,52 @@
+package data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Penghitung id monoton ("B0001", "T00001", ...). Di-seed sekali saat load dari id
+ * yang ada + nilai tersimpan di sequence.txt, setelah itu next() O(1) dan aman
+ * dipanggil dari beberapa thread. Id yang sudah dipakai tidak akan diberikan lagi,
+ * walaupun record-nya sudah dihapus.
+ */
+class IdSequence {
+
+    private final char prefix;
+    private final String format;
+    private final AtomicInteger last = new AtomicInteger();
+
+    IdSequence(char prefix, int digits) {
+        this.prefix = prefix;
+        this.format = prefix + "%0" + digits + "d";
+    }
+
+    char prefix() { return prefix; }
+
+    String next() {
+        return String.format(format, last.incrementAndGet());
+    }
+
+    /** Id yang akan diberikan next() berikutnya, tanpa memakainya (untuk preview di form). */
+    String peek() {
+        return String.format(format, last.get() + 1);
+    }
+
+    int last() { return last.get(); }
+
+    void reset() { last.set(0); }
+
+    void seed(int value) {
+        last.accumulateAndGet(value, Math::max);
+    }
+
+    /** Naikkan sequence bila id berformat prefix+angka lebih besar dari nilai sekarang. */
+    void observe(String id) {
+        if (id == null || id.length() < 2 || id.charAt(0) != prefix) return;
+        int n = 0;
+        for (int i = 1; i < id.length(); i++) {
+            int d = id.charAt(i) - '0';
+            if (d < 0 || d > 9 || n > (Integer.MAX_VALUE - d) / 10) return;
+            n = n * 10 + d;
+        }
+        seed(n);
+    }
+}
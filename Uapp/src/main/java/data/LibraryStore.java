@@ -3,153 +3,1021 @@ package data;
 import model.Book;
 import model.Loan;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
+/**
+ * Method publik yang menyentuh list/indeks/journal di-synchronized pada store ini, jadi
+ * boleh dipanggil dari beberapa thread. Iterasi getBooks()/getLoans() tetap harus dari
+ * satu thread (UI) atau di dalam synchronized (store); thread lain memakai {@link #copyOfBooks()}.
+ */
 public class LibraryStore {
 
+    // jumlah record journal sebelum dilipat kembali ke books.txt/loans.txt
+    public static final int CHECKPOINT_EVERY = 500;
+
+    // loan RETURNED yang dipinjam sebelum N bulan terakhir dipindah ke data/archive/loans-YYYY-MM.txt
+    public static final int ARCHIVE_KEEP_MONTHS = 3;
+
     private final Path booksFile;
     private final Path loansFile;
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final Path sequenceFile;
+    private final Path archiveDir;
 
     private final List<Book> books = new ArrayList<>();
-    private final List<Loan> loans = new ArrayList<>();
+    private List<Loan> loans = new ArrayList<>();
+    private LoanTable loanTable;   // non-null = mode ringkas, loans adalah view ke tabel ini
+
+    // indeks id/trxId (huruf kecil) -> record, supaya findBook/findLoan O(1)
+    private final Map<String, Book> bookIndex = new HashMap<>();
+    private final Map<String, Loan> loanIndex = new HashMap<>();
+    // bookId (kecil) -> trxId loan BORROWED buku itu; trxId dipakai karena view LoanTable bisa bergeser
+    private final Map<String, Set<String>> activeByBook = new HashMap<>();
+
+    // bulan yang punya segmen arsip; isi segmen dimuat saat dibutuhkan
+    private final TreeSet<YearMonth> archiveMonths = new TreeSet<>();
+    private final Map<YearMonth, List<Loan>> archiveLoaded = new HashMap<>();
+    // loan yang diarsipkan sesi ini ke bulan yang belum dimuat; writer mungkin belum meng-append-nya
+    private final Map<YearMonth, List<Loan>> archivePending = new HashMap<>();
+
+    private volatile int loanGeneration = 0;      // lihat getLoanGeneration()
+
+    private final IdSequence bookIds = new IdSequence('B', 4);
+    private final IdSequence loanIds = new IdSequence('T', 5);
+
+    private boolean journalEnabled = false;
+    private boolean parallelLoad = Runtime.getRuntime().availableProcessors() > 1;
+    private final List<String> pendingJournal = new ArrayList<>();
+    private int journalRecords = 0;
+
+    // ada mutasi yang belum diserahkan ke penulisan
+    private volatile boolean dirty = false;
+
+    // change-set file utama (bisa tertinggal dari memori selama mutasi hanya masuk journal)
+    private boolean booksStale = false;   // books.txt perlu ditulis ulang
+    private boolean loansStale = false;   // ada loan lama yang berubah -> loans.txt ditulis ulang
+    private int loansInFile = 0;          // loans[0..loansInFile) sudah ada di loans.txt, sisanya cukup di-append
+    private final Set<String> loansNotInFile = new HashSet<>();  // trxId (kecil) dari loans[loansInFile..]
+    private volatile boolean forceCheckpoint = false;
+
+    private boolean asyncSave = false;
+    private volatile Consumer<List<Loan>> archiveListener;
+    private ExecutorService writer;
+    private final Object writeLock = new Object();
+    private WriteSet queued;                      // guarded by writeLock
+    private CompletableFuture<Void> queuedDone;   // guarded by writeLock
+    private CompletableFuture<Void> inFlightDone; // guarded by writeLock
+    private boolean writerScheduled;              // guarded by writeLock
+    private volatile Exception writeError;
 
     public LibraryStore(Path booksFile, Path loansFile) {
         this.booksFile = booksFile;
         this.loansFile = loansFile;
+        this.journalFile = booksFile.resolveSibling("journal.txt");
+        this.snapshotFile = booksFile.resolveSibling("library.bin");
+        this.sequenceFile = booksFile.resolveSibling("sequence.txt");
+        this.archiveDir = booksFile.resolveSibling("archive");
+    }
+
+    // read-only: tambah/hapus lewat addBook/removeBook/addLoan agar indeks tetap sinkron
+    public List<Book> getBooks() { return Collections.unmodifiableList(books); }
+    public List<Loan> getLoans() { return Collections.unmodifiableList(loans); }
+
+    /** Salinan list buku (objek Book yang sama) untuk thread di luar UI, misalnya pencarian di background. */
+    public synchronized List<Book> copyOfBooks() { return new ArrayList<>(books); }
+
+    public Path getJournalFile() { return journalFile; }
+    public Path getSnapshotFile() { return snapshotFile; }
+    public Path getArchiveDir() { return archiveDir; }
+    public boolean isJournalEnabled() { return journalEnabled; }
+    /**
+     * Tanpa journal, checkpoint menulis books.txt lalu loans.txt sebagai dua rename atomik terpisah:
+     * crash di antara keduanya meninggalkan stok yang sudah berubah tanpa loan-nya (atau sebaliknya).
+     * Dengan journal, record B/L baru dibuang sesudah kedua file tertulis, jadi replay memulihkannya.
+     */
+    public void setJournalEnabled(boolean journalEnabled) { this.journalEnabled = journalEnabled; }
+    public boolean isParallelLoad() { return parallelLoad; }
+    public void setParallelLoad(boolean parallelLoad) { this.parallelLoad = parallelLoad; }
+    public boolean isCompactLoans() { return loanTable != null; }
+
+    /**
+     * Mode ringkas: loan disimpan di {@link LoanTable} (array primitif + kamus string),
+     * objek Loan hanya view yang dibuat saat diakses. Panggil sebelum load().
+     */
+    public synchronized void setCompactLoans(boolean compact) {
+        if (compact == (loanTable != null)) return;
+        List<Loan> old = loans;
+        loanTable = compact ? new LoanTable() : null;
+        loans = compact ? loanTable.asList() : new ArrayList<>();
+        for (Loan l : old) loans.add(compact ? l : copyOf(l));
+        reindex();
+        loanGeneration++;
     }
 
-    public List<Book> getBooks() { return books; }
-    public List<Loan> getLoans() { return loans; }
+    /**
+     * Dipanggil (selagi lock store dipegang, jadi harus cepat dan tidak memanggil balik store)
+     * dengan salinan loan berdenda yang baru dipindah ke arsip.
+     */
+    public void setArchiveListener(Consumer<List<Loan>> archiveListener) { this.archiveListener = archiveListener; }
+
+    public boolean isAsyncSave() { return asyncSave; }
+    public void setAsyncSave(boolean asyncSave) { this.asyncSave = asyncSave; }
+    public boolean isDirty() { return dirty; }
+
+    public synchronized void load() throws Exception {
+        // jangan baca file yang masih akan ditimpa writer
+        flush();
 
-    public void load() throws Exception {
         ensureParent(booksFile);
         ensureParent(loansFile);
 
         books.clear();
         loans.clear();
+        pendingJournal.clear();
+        journalRecords = 0;
+        dirty = false;
+        bookIds.reset();
+        loanIds.reset();
+
+        if (!loadSnapshot()) loadText();
+        reindex();
+        loadSequence();
+
+        booksStale = false;
+        loansStale = false;
+        loansInFile = loans.size();
+        loansNotInFile.clear();
+        replayJournal();
+        scanArchive();
+        loanGeneration++;
+    }
+
+    private void loadText() throws Exception {
+        if (parallelLoad) {
+            loadTextParallel();
+            return;
+        }
 
         if (Files.exists(booksFile)) {
-            for (String line : Files.readAllLines(booksFile, StandardCharsets.UTF_8)) {
-                if (line == null || line.isBlank()) continue;
-                // id|title|author|year|stockTotal|stockAvail
-                String[] p = line.split("\\|", -1);
-                if (p.length < 6) continue;
+            RecordReader.forEachLine(booksFile, false, r -> {
+                Book b = readBookLine(r);
+                if (b != null) books.add(b);
+            });
+        }
 
-                books.add(new Book(
-                        p[0], p[1], p[2],
-                        Integer.parseInt(p[3]),
-                        Integer.parseInt(p[4]),
-                        Integer.parseInt(p[5])
-                ));
+        if (Files.exists(loansFile)) {
+            RecordReader.forEachLine(loansFile, false, r -> {
+                Loan l = readLoanLine(r);
+                if (l != null) loans.add(l);
+            });
+        }
+    }
+
+    /** books.txt & loans.txt dibaca bersamaan; loans.txt dipecah per potongan baris di ForkJoinPool. */
+    private void loadTextParallel() throws Exception {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        Future<List<Book>> bookTask = pool.submit(() -> {
+            List<Book> out = new ArrayList<>();
+            if (Files.exists(booksFile)) {
+                RecordReader.forEachLine(booksFile, false, r -> {
+                    Book b = readBookLine(r);
+                    if (b != null) out.add(b);
+                });
             }
+            return out;
+        });
+
+        List<Loan> loaded = Files.exists(loansFile)
+                ? RecordReader.parseParallel(loansFile, pool, LibraryStore::readLoanLine)
+                : Collections.emptyList();
+
+        try {
+            books.addAll(bookTask.get());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
+        loans.addAll(loaded);
+    }
 
-        if (Files.exists(loansFile)) {
-            for (String line : Files.readAllLines(loansFile, StandardCharsets.UTF_8)) {
-                if (line == null || line.isBlank()) continue;
-
-                // format baru:
-                // trxId|bookId|bookTitle|borrower|borrowDate|dueDate|returnDate|status|fine
-                // format lama (kompatibel):
-                // trxId|bookId|bookTitle|borrower|borrowDate|returnDate|status
-
-                String[] p = line.split("\\|", -1);
-
-                if (p.length >= 9) {
-                    LocalDate borrowDate = LocalDate.parse(p[4]);
-                    LocalDate dueDate = LocalDate.parse(p[5]);
-                    LocalDate returnDate = p[6].isBlank() ? null : LocalDate.parse(p[6]);
-                    String status = p[7];
-                    long fine = p[8].isBlank() ? 0 : Long.parseLong(p[8]);
-
-                    loans.add(new Loan(p[0], p[1], p[2], p[3], borrowDate, dueDate, returnDate, status, fine));
-                } else if (p.length >= 7) {
-                    LocalDate borrowDate = LocalDate.parse(p[4]);
-                    LocalDate dueDate = borrowDate.plusDays(7);
-                    LocalDate returnDate = p[5].isBlank() ? null : LocalDate.parse(p[5]);
-                    String status = p[6];
-                    loans.add(new Loan(p[0], p[1], p[2], p[3], borrowDate, dueDate, returnDate, status, 0));
+    // id|title|author|year|stockTotal|stockAvail
+    private static Book readBookLine(RecordReader r) {
+        if (r.fields() < 6) return null;
+        return readBook(r, 0);
+    }
+
+    private static Loan readLoanLine(RecordReader r) {
+        // format baru:
+        // trxId|bookId|bookTitle|borrower|borrowDate|dueDate|returnDate|status|fine
+        // format lama (kompatibel):
+        // trxId|bookId|bookTitle|borrower|borrowDate|returnDate|status
+
+        if (r.fields() >= 9) {
+            return readLoan(r, 0);
+        } else if (r.fields() >= 7) {
+            LocalDate borrowDate = r.dateAt(4);
+            LocalDate dueDate = borrowDate.plusDays(7);
+            LocalDate returnDate = r.dateOrNull(5);
+            String status = readStatus(r, 6);
+            return new Loan(r.str(0), r.str(1), r.str(2), r.str(3), borrowDate, dueDate, returnDate, status, 0);
+        }
+        return null;
+    }
+
+    private void loadSequence() throws Exception {
+        if (!Files.exists(sequenceFile)) return;
+        // B|<id buku terakhir>, T|<id transaksi terakhir>
+        RecordReader.forEachLine(sequenceFile, false, r -> {
+            if (r.fields() < 2) return;
+            if (r.is(0, "B")) bookIds.seed(r.intAt(1));
+            else if (r.is(0, "T")) loanIds.seed(r.intAt(1));
+        });
+    }
+
+    /** Snapshot biner dipakai hanya bila tidak lebih lama dari books.txt & loans.txt. */
+    private boolean loadSnapshot() {
+        try {
+            if (!Files.exists(snapshotFile)) return false;
+            FileTime snap = Files.getLastModifiedTime(snapshotFile);
+            if (Files.exists(booksFile) && snap.compareTo(Files.getLastModifiedTime(booksFile)) < 0) return false;
+            if (Files.exists(loansFile) && snap.compareTo(Files.getLastModifiedTime(loansFile)) < 0) return false;
+
+            BinarySnapshot.read(snapshotFile, books, loans);
+            return true;
+        } catch (IOException e) {
+            // snapshot rusak / versi lain -> baca ulang dari teks
+            books.clear();
+            loans.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Mode journal: mutasi yang tertunda cukup di-append ke journal.txt.
+     * Snapshot penuh (checkpoint) hanya ditulis tiap {@link #CHECKPOINT_EVERY} record.
+     * Di bawah lock store hanya salinan record yang diambil; teks, snapshot dan I/O dikerjakan
+     * writer di luar lock. Mode async tidak menunggu writer, mode biasa menunggu sampai di disk.
+     */
+    public void save() throws Exception {
+        synchronized (this) {
+            rethrowWriteError();
+            if (!dirty) return;
+
+            WriteSet w;
+            if (journalEnabled && !forceCheckpoint && journalRecords + pendingJournal.size() < CHECKPOINT_EVERY) {
+                w = prepareJournal();
+            } else {
+                w = prepareCheckpoint(forceCheckpoint);
+            }
+            dirty = false;
+            // antre selagi lock dipegang: urutan batch di writer = urutan mutasi
+            enqueue(w);
+        }
+        if (!asyncSave) flush();
+    }
+
+    /** Tulis ulang books.txt & loans.txt (+ snapshot biner) penuh, lalu kosongkan journal. */
+    public void checkpoint() throws Exception {
+        synchronized (this) {
+            rethrowWriteError();
+            WriteSet w = prepareCheckpoint(true);
+            dirty = false;
+            enqueue(w);
+        }
+        if (!asyncSave) flush();
+    }
+
+    /** Seperti {@link #save()}, tapi future selesai setelah data benar-benar di disk (fsync). */
+    public CompletableFuture<Void> saveAsync() throws Exception {
+        save();
+        return durable();
+    }
+
+    /** Tunggu semua penulisan yang sudah diminta selesai di disk. */
+    public void flush() throws Exception {
+        try {
+            durable().get();
+        } catch (ExecutionException e) {
+            writeError = null;
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        rethrowWriteError();
+    }
+
+    private CompletableFuture<Void> durable() {
+        synchronized (writeLock) {
+            if (queuedDone != null) return queuedDone;
+            if (inFlightDone != null) return inFlightDone;
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private WriteSet prepareJournal() {
+        WriteSet w = new WriteSet();
+        for (String r : pendingJournal) w.journal.append(r).append('\n');
+        journalRecords += pendingJournal.size();
+        pendingJournal.clear();
+        return w;
+    }
+
+    /**
+     * Bawa file utama sejajar dengan memori. Tanpa {@code full} hanya bagian yang berubah
+     * yang ditulis: books.txt bila ada buku berubah, loans.txt di-append bila hanya ada
+     * loan baru, dan ditulis ulang bila ada loan lama yang berubah (mis. dikembalikan).
+     */
+    private WriteSet prepareCheckpoint(boolean full) {
+        WriteSet w = new WriteSet();
+        w.checkpoint = true;
+
+        List<Book> bookCopies = null;
+        if (full || booksStale) {
+            bookCopies = copyBookValues();
+            w.books = bookCopies;
+        }
+
+        // append di tempat hanya dengan journal: baris terakhir yang terpotong crash dipulihkan saat
+        // replay (record L menimpa status/tanggal/denda). Tanpa journal loans.txt ditulis ulang atomik.
+        boolean grown = loansInFile < loans.size();
+        // record yang belum sampai ke journal.txt ditulis dulu: crash di tengah checkpoint (antara
+        // books.txt dan loans.txt, atau saat append) dipulihkan oleh replay
+        if (journalEnabled) {
+            for (String r : pendingJournal) w.journalFirst.append(r).append('\n');
+        }
+        if (full || loansStale || (grown && !journalEnabled)) {
+            archiveOldLoans(w);
+            w.loans = copyOfLoans(0, loans.size());
+        } else if (grown) {
+            w.loansAppend = copyOfLoans(loansInFile, loans.size());
+        }
+        // snapshot biner selalu memuat seluruh state; encode-nya dikerjakan writer di luar lock
+        w.snapshotBooks = bookCopies != null ? bookCopies : copyBookValues();
+        w.snapshotLoans = w.loans != null ? w.loans : copyOfLoans(0, loans.size());
+
+        w.sequence = ("B|" + bookIds.last() + "\nT|" + loanIds.last() + "\n").getBytes(StandardCharsets.UTF_8);
+
+        // file utama sudah memuat semua mutasi, journal boleh dibuang
+        pendingJournal.clear();
+        journalRecords = 0;
+        forceCheckpoint = false;
+        booksStale = false;
+        loansStale = false;
+        loansInFile = loans.size();
+        loansNotInFile.clear();
+        return w;
+    }
+
+    // Book & Loan diubah service di luar lock store, jadi writer hanya boleh membaca salinan nilainya
+    private List<Book> copyBookValues() {
+        List<Book> out = new ArrayList<>(books.size());
+        for (Book b : books) {
+            out.add(new Book(b.getId(), b.getTitle(), b.getAuthor(), b.getYear(), b.getStockTotal(), b.getStockAvail()));
+        }
+        return out;
+    }
+
+    private List<Loan> copyOfLoans(int from, int to) {
+        if (loanTable != null) return loanTable.copyOfRange(from, to);
+        List<Loan> out = new ArrayList<>(to - from);
+        for (Loan l : loans.subList(from, to)) out.add(copyOf(l));
+        return out;
+    }
+
+    // ---------- writer ----------
+    private void enqueue(WriteSet w) {
+        synchronized (writeLock) {
+            if (queued == null) {
+                queued = w;
+                queuedDone = new CompletableFuture<>();
+            } else {
+                queued.merge(w);
+            }
+            if (!writerScheduled) {
+                writerScheduled = true;
+                writer().execute(this::drain);
+            }
+        }
+    }
+
+    /** Satu writer: semua save() yang masuk selama satu penulisan digabung jadi satu batch. */
+    private void drain() {
+        while (true) {
+            WriteSet w;
+            CompletableFuture<Void> done;
+            synchronized (writeLock) {
+                if (queued == null) {
+                    writerScheduled = false;
+                    inFlightDone = null;
+                    return;
                 }
+                w = queued;
+                done = queuedDone;
+                queued = null;
+                queuedDone = null;
+                inFlightDone = done;
+            }
+            try {
+                write(w);
+                done.complete(null);
+            } catch (Exception e) {
+                writeError = e;
+                // isi journal/snapshot batch ini hilang dari disk -> save berikutnya tulis penuh
+                forceCheckpoint = true;
+                dirty = true;
+                done.completeExceptionally(e);
             }
         }
     }
 
-    public void save() throws Exception {
-        ensureParent(booksFile);
-        ensureParent(loansFile);
+    private ExecutorService writer() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "library-writer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return writer;
+    }
+
+    private void rethrowWriteError() throws Exception {
+        Exception e = writeError;
+        if (e != null) {
+            writeError = null;
+            throw e;
+        }
+    }
+
+    private void write(WriteSet w) throws IOException {
+        if (w.checkpoint) {
+            ensureParent(booksFile);
+            ensureParent(loansFile);
+            if (w.journalFirst.length() > 0) appendJournal(w.journalFirst);
+            if (w.books != null) writeAtomically(booksFile, bookBytes(w.books));
+            // arsip ditulis sebelum loans.txt; bila crash di antaranya, duplikat diabaikan saat arsip dibaca
+            if (!w.archiveAppend.isEmpty()) Files.createDirectories(archiveDir);
+            for (Map.Entry<YearMonth, List<Loan>> e : w.archiveAppend.entrySet()) {
+                appendLines(archiveFile(e.getKey()), loanBytes(e.getValue()));
+            }
+            if (w.loans != null) writeAtomically(loansFile, loanBytes(w.loans));
+            if (w.loansAppend != null) appendLines(loansFile, loanBytes(w.loansAppend));
+            writeAtomically(sequenceFile, w.sequence);
+
+            try {
+                writeAtomically(snapshotFile, BinarySnapshot.encode(w.snapshotBooks, w.snapshotLoans));
+            } catch (IOException e) {
+                // snapshot hanya cache; teks sudah tersimpan, load akan kembali ke teks
+                Files.deleteIfExists(snapshotFile);
+            }
+            Files.deleteIfExists(journalFile);
+        }
+
+        if (w.journal.length() > 0) appendJournal(w.journal);
+    }
+
+    private static byte[] bookBytes(List<Book> books) {
+        StringBuilder sb = new StringBuilder(books.size() * 48);
+        for (Book b : books) sb.append(bookLine(b)).append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] loanBytes(List<Loan> loans) {
+        StringBuilder sb = new StringBuilder(loans.size() * 96);
+        for (Loan l : loans) sb.append(loanLine(l)).append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendJournal(CharSequence records) throws IOException {
+        ensureParent(journalFile);
+        Files.writeString(journalFile, records, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+    }
 
-        List<String> bookLines = new ArrayList<>();
+    private static void appendLines(Path file, byte[] lines) throws IOException {
+        boolean created;
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            created = size == 0;
+            ByteBuffer buf = ByteBuffer.wrap(lines);
+            if (size > 0) {
+                // file yang diedit manual bisa tidak diakhiri '\n'
+                ByteBuffer last = ByteBuffer.allocate(1);
+                ch.read(last, size - 1);
+                if (last.get(0) != '\n') {
+                    ch.write(ByteBuffer.wrap(new byte[]{'\n'}), size);
+                    size++;
+                }
+            }
+            while (buf.hasRemaining()) size += ch.write(buf, size);
+            ch.force(true);
+        }
+        // file baru (mis. segmen arsip bulan baru): entri direktorinya juga harus sampai di disk
+        if (created) forceDirectory(file);
+    }
+
+    /**
+     * Tulis ke file .tmp, fsync, lalu rename atomik supaya file lama tidak pernah setengah tertulis.
+     * Direktori ikut di-fsync sesudah rename; tanpa itu crash bisa mengembalikan isi file lama.
+     */
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(target);
+    }
+
+    private static void forceDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // Windows tidak bisa membuka direktori sebagai channel; NTFS sendiri sudah men-journal rename
+        }
+    }
+
+    /** Data yang akan ditulis writer: salinan record yang diambil di bawah lock store, di-encode oleh writer. */
+    private static final class WriteSet {
+        boolean checkpoint;         // false = hanya append journal
+        List<Book> books;           // null = books.txt tidak berubah
+        List<Loan> loans;           // null = loans.txt tidak ditulis ulang
+        List<Loan> loansAppend;     // loan baru untuk di-append
+        final Map<YearMonth, List<Loan>> archiveAppend = new TreeMap<>();
+        List<Book> snapshotBooks;   // state lengkap untuk snapshot biner (hanya checkpoint)
+        List<Loan> snapshotLoans;
+        byte[] sequence;
+        final StringBuilder journal = new StringBuilder();
+        final StringBuilder journalFirst = new StringBuilder();   // ditulis ke journal sebelum file utama
+
+        void merge(WriteSet newer) {
+            if (newer.checkpoint) {
+                // checkpoint baru sudah memuat semua record journal sebelumnya
+                checkpoint = true;
+                // record journal lama belum tertulis: ikut sebelum append supaya baris loan-nya tetap terpulihkan
+                journalFirst.append(journal);
+                journal.setLength(0);
+                if (newer.books != null) books = newer.books;
+                if (newer.loans != null) {
+                    loans = newer.loans;
+                    loansAppend = null;
+                } else if (newer.loansAppend != null) {
+                    loansAppend = loansAppend == null ? newer.loansAppend : concat(loansAppend, newer.loansAppend);
+                }
+                newer.archiveAppend.forEach((m, moved) -> archiveAppend.merge(m, moved, WriteSet::concat));
+                snapshotBooks = newer.snapshotBooks;
+                snapshotLoans = newer.snapshotLoans;
+                sequence = newer.sequence;
+            }
+            journalFirst.append(newer.journalFirst);
+            journal.append(newer.journal);
+        }
+
+        private static List<Loan> concat(List<Loan> a, List<Loan> b) {
+            List<Loan> out = new ArrayList<>(a.size() + b.size());
+            out.addAll(a);
+            out.addAll(b);
+            return out;
+        }
+    }
+
+    // ---------- mutasi (dicatat ke journal) ----------
+    public synchronized void addBook(Book b) {
+        putBook(b);
+        booksStale = true;
+        journal("B|" + bookLine(b));
+    }
+
+    public synchronized void bookChanged(Book b) {
+        booksStale = true;
+        journal("B|" + bookLine(b));
+    }
+
+    public synchronized void removeBook(String id) {
+        if (dropBook(id)) {
+            booksStale = true;
+            journal("D|" + id);
+        }
+    }
+
+    public synchronized void addLoan(Loan l, Book b) {
+        putLoan(l);
+        booksStale = true;
+        journal("L|" + loanLine(l) + "|" + b.getStockAvail());
+    }
+
+    /** Dipanggil setelah loan berubah (mis. dikembalikan); stok buku ikut dicatat. */
+    public synchronized void loanChanged(Loan l, Book b) {
+        booksStale = true;
+        markLoanStale(l);
+        trackActive(l);
+        journal("L|" + loanLine(l) + "|" + b.getStockAvail());
+    }
+
+    public synchronized boolean hasBorrowedLoan(String bookId) {
+        return activeByBook.containsKey(key(bookId));
+    }
+
+    /** Loan BORROWED untuk satu buku, urut sesuai waktu pinjam. O(jumlah pinjaman aktif buku itu). */
+    public synchronized List<Loan> getActiveLoans(String bookId) {
+        Set<String> trx = activeByBook.get(key(bookId));
+        if (trx == null) return new ArrayList<>();
+        List<Loan> out = new ArrayList<>(trx.size());
+        for (String t : trx) {
+            Loan l = findLoan(t);
+            if (l != null) out.add(l);
+        }
+        return out;
+    }
+
+    public synchronized Book findBook(String id) {
+        return id == null ? null : bookIndex.get(key(id));
+    }
+
+    public synchronized Loan findLoan(String trxId) {
+        if (trxId == null) return null;
+        if (loanTable != null) return loanTable.find(trxId);
+        return loanIndex.get(key(trxId));
+    }
+
+    /** Ambil id buku baru (tidak pernah dipakai ulang). */
+    public String nextBookId() { return bookIds.next(); }
+
+    /** Ambil id transaksi baru (tidak pernah dipakai ulang). */
+    public String nextLoanId() { return loanIds.next(); }
+
+    /** Id buku berikutnya tanpa memakainya, untuk ditampilkan di form tambah. */
+    public String peekBookId() { return bookIds.peek(); }
+
+    // loan yang belum ada di loans.txt cukup ikut di-append, selain itu file harus ditulis ulang
+    private void markLoanStale(Loan l) {
+        if (!loansStale && !loansNotInFile.contains(key(l.getTrxId()))) loansStale = true;
+    }
+
+    // ---------- indeks ----------
+    private static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    private void putBook(Book b) {
+        books.add(b);
+        bookIndex.putIfAbsent(key(b.getId()), b);
+        bookIds.observe(b.getId());
+    }
+
+    private boolean dropBook(String id) {
+        if (bookIndex.remove(key(id)) == null) return false;
+        books.removeIf(b -> b.getId().equalsIgnoreCase(id));
+        return true;
+    }
+
+    private void putLoan(Loan l) {
+        loans.add(l);
+        loansNotInFile.add(key(l.getTrxId()));
+        if (loanTable == null) loanIndex.putIfAbsent(key(l.getTrxId()), l);
+        loanIds.observe(l.getTrxId());
+        trackActive(l);
+    }
+
+    private void trackActive(Loan l) {
+        String book = key(l.getBookId());
+        if (Loan.BORROWED.equals(l.getStatus())) {
+            activeByBook.computeIfAbsent(book, k -> new LinkedHashSet<>()).add(key(l.getTrxId()));
+            return;
+        }
+        Set<String> trx = activeByBook.get(book);
+        if (trx != null && trx.remove(key(l.getTrxId())) && trx.isEmpty()) activeByBook.remove(book);
+    }
+
+    private void reindex() {
+        bookIndex.clear();
+        loanIndex.clear();
+        activeByBook.clear();
+        // id ganda di file: yang pertama menang, sama seperti pencarian linear dulu
         for (Book b : books) {
-            bookLines.add(String.join("|",
-                    b.getId(),
-                    safe(b.getTitle()),
-                    safe(b.getAuthor()),
-                    String.valueOf(b.getYear()),
-                    String.valueOf(b.getStockTotal()),
-                    String.valueOf(b.getStockAvail())
-            ));
-        }
-        Files.write(booksFile, bookLines, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-
-        List<String> loanLines = new ArrayList<>();
+            bookIndex.putIfAbsent(key(b.getId()), b);
+            bookIds.observe(b.getId());
+        }
+        if (loanTable != null) {
+            // tabel punya indeks trx sendiri
+            loanTable.observeIds(loanIds);
+        } else {
+            for (Loan l : loans) {
+                loanIndex.putIfAbsent(key(l.getTrxId()), l);
+                loanIds.observe(l.getTrxId());
+            }
+        }
         for (Loan l : loans) {
-            loanLines.add(String.join("|",
-                    l.getTrxId(),
-                    l.getBookId(),
-                    safe(l.getBookTitle()),
-                    safe(l.getBorrower()),
-                    l.getBorrowDate().toString(),
-                    l.getDueDate().toString(),
-                    l.getReturnDate() == null ? "" : l.getReturnDate().toString(),
-                    l.getStatus(),
-                    String.valueOf(l.getFine())
-            ));
-        }
-        Files.write(loansFile, loanLines, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-    }
-
-    public Book findBook(String id) {
-        for (Book b : books) {
-            if (b.getId().equalsIgnoreCase(id)) return b;
+            if (Loan.BORROWED.equals(l.getStatus())) trackActive(l);
         }
-        return null;
     }
 
-    public Loan findLoan(String trxId) {
-        for (Loan l : loans) {
-            if (l.getTrxId().equalsIgnoreCase(trxId)) return l;
+    // ---------- posisi loan (untuk indeks di luar store) ----------
+    /**
+     * Loan hanya di-append selama generation sama; posisinya di getLoans() baru berubah saat
+     * load, ganti mode, atau pengarsipan memadatkan list, dan saat itu generation naik.
+     */
+    public int getLoanGeneration() { return loanGeneration; }
+
+    /** Tanggal pinjam (epoch day) loan di posisi from..akhir, atau null bila generation sudah lewat. */
+    public synchronized int[] loanDays(int generation, int from) {
+        if (generation != loanGeneration) return null;
+        int[] out = new int[Math.max(0, loans.size() - from)];
+        for (int i = 0; i < out.length; i++) out[i] = (int) loans.get(from + i).getBorrowDate().toEpochDay();
+        return out;
+    }
+
+    /** Loan di posisi-posisi itu (urutan sama), atau null bila generation sudah lewat. */
+    public synchronized List<Loan> loansAt(int generation, int[] positions, int count) {
+        if (generation != loanGeneration) return null;
+        List<Loan> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) out.add(loans.get(positions[i]));
+        return out;
+    }
+
+    // ---------- arsip ----------
+    /**
+     * Loan yang sudah diarsipkan dengan tanggal pinjam di antara from..to (inklusif, null = tanpa batas).
+     * Segmen bulanan baru dibaca dari disk saat pertama kali tercakup query, di luar lock store.
+     */
+    public List<Loan> getArchivedLoans(LocalDate from, LocalDate to) throws Exception {
+        List<Loan> out = new ArrayList<>();
+        List<YearMonth> months;
+        synchronized (this) {
+            if (archiveMonths.isEmpty()) return out;
+            YearMonth lo = from == null ? archiveMonths.first() : YearMonth.from(from);
+            YearMonth hi = to == null ? archiveMonths.last() : YearMonth.from(to);
+            if (lo.isAfter(hi)) return out;
+            months = new ArrayList<>(archiveMonths.subSet(lo, true, hi, true));
         }
-        return null;
+
+        for (YearMonth m : months) {
+            List<Loan> month = cachedArchive(m);
+            if (month == null) month = cacheArchive(m, readArchive(m));
+            synchronized (this) {
+                // cache bisa bertambah oleh pengarsipan, jadi dibaca di bawah lock
+                for (Loan l : month) {
+                    LocalDate d = l.getBorrowDate();
+                    if (from != null && d.isBefore(from)) continue;
+                    if (to != null && d.isAfter(to)) continue;
+                    out.add(l);
+                }
+            }
+        }
+        return out;
     }
 
-    public String nextBookId() {
-        int max = 0;
-        for (Book b : books) {
-            if (b.getId().startsWith("B")) {
-                try { max = Math.max(max, Integer.parseInt(b.getId().substring(1))); }
-                catch (Exception ignored) {}
+    /** Bulan yang punya segmen arsip (salinan). */
+    public synchronized NavigableSet<YearMonth> getArchiveMonths() {
+        return new TreeSet<>(archiveMonths);
+    }
+
+    /** Bulan pinjam paling awal yang masih disimpan di loans.txt. */
+    public YearMonth getArchiveCutoff() {
+        return YearMonth.now().minusMonths(ARCHIVE_KEEP_MONTHS);
+    }
+
+    private synchronized List<Loan> cachedArchive(YearMonth m) {
+        return archiveLoaded.get(m);
+    }
+
+    // tanpa lock: hanya membaca file segmen, belum dicocokkan dengan state store
+    private List<Loan> readArchive(YearMonth m) throws Exception {
+        List<Loan> list = new ArrayList<>();
+        Path f = archiveFile(m);
+        if (Files.exists(f)) {
+            RecordReader.forEachLine(f, false, r -> {
+                if (r.fields() >= 9) list.add(readLoan(r, 0));
+            });
+        }
+        return list;
+    }
+
+    private synchronized List<Loan> cacheArchive(YearMonth m, List<Loan> fromDisk) {
+        // thread lain sudah lebih dulu memuat bulan ini
+        List<Loan> cached = archiveLoaded.get(m);
+        if (cached != null) return cached;
+
+        List<Loan> list = new ArrayList<>(fromDisk.size());
+        Set<String> seen = new HashSet<>();
+        // sisa crash saat pengarsipan: segmen sudah di-append tapi loans.txt belum diganti,
+        // jadi loan masih ada di loans.txt, atau (setelah diarsipkan lagi) tertulis dua kali
+        for (Loan l : fromDisk) {
+            if (findLoan(l.getTrxId()) == null && seen.add(key(l.getTrxId()))) list.add(l);
+        }
+        // diarsipkan selagi file dibaca, atau masih antre di writer
+        List<Loan> pending = archivePending.remove(m);
+        if (pending != null) {
+            for (Loan l : pending) {
+                if (seen.add(key(l.getTrxId()))) list.add(l);
             }
         }
-        return String.format("B%04d", max + 1);
+        archiveLoaded.put(m, list);
+        return list;
     }
 
-    public String nextLoanId() {
-        int max = 0;
-        for (Loan l : loans) {
-            if (l.getTrxId().startsWith("T")) {
-                try { max = Math.max(max, Integer.parseInt(l.getTrxId().substring(1))); }
-                catch (Exception ignored) {}
+    private void scanArchive() throws Exception {
+        archiveMonths.clear();
+        archiveLoaded.clear();
+        archivePending.clear();
+        if (!Files.isDirectory(archiveDir)) return;
+
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(archiveDir, "loans-*.txt")) {
+            for (Path f : ds) {
+                String name = f.getFileName().toString();
+                try {
+                    archiveMonths.add(YearMonth.parse(name.substring(6, name.length() - 4)));
+                    segments.add(f);
+                } catch (RuntimeException ignored) {
+                    // bukan segmen arsip
+                }
+            }
+        }
+        // id loan yang sudah diarsipkan tidak boleh dipakai lagi walau sequence.txt hilang/basi;
+        // cukup kolom pertama, isi segmen tetap dimuat saat dibutuhkan
+        for (Path f : segments) {
+            RecordReader.forEachLine(f, false, r -> {
+                if (r.fields() > 0) loanIds.observe(r.str(0));
+            });
+        }
+    }
+
+    /** Pindahkan loan RETURNED lama dari list aktif ke segmen arsip (dipanggil saat loans.txt ditulis ulang). */
+    private void archiveOldLoans(WriteSet w) {
+        YearMonth cutoff = getArchiveCutoff();
+        Map<YearMonth, List<Loan>> out = new TreeMap<>();
+        List<Loan> fined = new ArrayList<>();
+
+        boolean moved = loans.removeIf(l -> {
+            if (!Loan.RETURNED.equals(l.getStatus())) return false;
+            YearMonth m = YearMonth.from(l.getBorrowDate());
+            if (!m.isBefore(cutoff)) return false;
+
+            // salinan: arsip & cache tidak ikut memegang kolom lama LoanTable
+            Loan copy = copyOf(l);
+            out.computeIfAbsent(m, k -> new ArrayList<>()).add(copy);
+            if (loanTable == null) loanIndex.remove(key(l.getTrxId()), l);
+            archiveMonths.add(m);
+            List<Loan> cached = archiveLoaded.get(m);
+            if (cached != null) cached.add(copy);
+            else archivePending.computeIfAbsent(m, k -> new ArrayList<>()).add(copy);
+            if (l.getFine() != 0) fined.add(copy);
+            return true;
+        });
+        if (!moved) return;
+        loanGeneration++;
+        Consumer<List<Loan>> listener = archiveListener;
+        if (listener != null && !fined.isEmpty()) listener.accept(fined);
+
+        w.archiveAppend.putAll(out);
+    }
+
+    private Path archiveFile(YearMonth m) {
+        return archiveDir.resolve("loans-" + m + ".txt");
+    }
+
+    // ---------- journal ----------
+    private void journal(String record) {
+        dirty = true;
+        if (journalEnabled) pendingJournal.add(record);
+    }
+
+    private void replayJournal() throws Exception {
+        if (!Files.exists(journalFile)) return;
+
+        // record:
+        // B|id|title|author|year|stockTotal|stockAvail   (tambah/ubah buku)
+        // D|id                                           (hapus buku)
+        // L|<9 field loan>|stockAvail                    (pinjam/kembali)
+        // baris terakhir tanpa '\n' = append yang terpotong (crash), tidak dibaca
+        RecordReader.forEachLine(journalFile, true, r -> {
+            try {
+                applyRecord(r);
+                journalRecords++;
+            } catch (RuntimeException ignored) {
+                // record rusak dilewati, sisanya tetap diputar ulang
+            }
+        });
+    }
+
+    // record journal belum ada di file utama -> change-set ikut ditandai
+    private void applyRecord(RecordReader r) {
+        if (r.is(0, "B")) {
+            if (r.fields() < 7) return;
+            booksStale = true;
+            Book incoming = readBook(r, 1);
+            Book b = findBook(incoming.getId());
+            if (b == null) {
+                putBook(incoming);
+            } else {
+                b.setTitle(incoming.getTitle());
+                b.setAuthor(incoming.getAuthor());
+                b.setYear(incoming.getYear());
+                b.setStockTotal(incoming.getStockTotal());
+                b.setStockAvail(incoming.getStockAvail());
             }
+        } else if (r.is(0, "D")) {
+            if (r.fields() < 2) return;
+            String id = r.str(1);
+            if (dropBook(id)) booksStale = true;
+        } else if (r.is(0, "L")) {
+            if (r.fields() < 11) return;
+            booksStale = true;
+            Loan incoming = readLoan(r, 1);
+            Loan l = findLoan(incoming.getTrxId());
+            if (l == null) {
+                putLoan(incoming);
+            } else {
+                markLoanStale(l);
+                l.setDueDate(incoming.getDueDate());
+                l.setReturnDate(incoming.getReturnDate());
+                l.setStatus(incoming.getStatus());
+                l.setFine(incoming.getFine());
+                trackActive(l);
+            }
+            Book b = findBook(incoming.getBookId());
+            if (b != null) b.setStockAvail(r.intAt(10));
         }
-        return String.format("T%05d", max + 1);
+        // tipe record lain tidak dikenal -> diabaikan
+    }
+
+    // ---------- format baris ----------
+    private static Book readBook(RecordReader r, int o) {
+        return new Book(
+                r.str(o), r.str(o + 1), r.str(o + 2),
+                r.intAt(o + 3),
+                r.intAt(o + 4),
+                r.intAt(o + 5)
+        );
+    }
+
+    private static Loan readLoan(RecordReader r, int o) {
+        LocalDate borrowDate = r.dateAt(o + 4);
+        LocalDate dueDate = r.dateAt(o + 5);
+        LocalDate returnDate = r.dateOrNull(o + 6);
+        String status = readStatus(r, o + 7);
+        long fine = r.longOrZero(o + 8);
+
+        return new Loan(r.str(o), r.str(o + 1), r.str(o + 2), r.str(o + 3), borrowDate, dueDate, returnDate, status, fine);
+    }
+
+    private static String readStatus(RecordReader r, int i) {
+        if (r.is(i, Loan.BORROWED)) return Loan.BORROWED;
+        if (r.is(i, Loan.RETURNED)) return Loan.RETURNED;
+        return r.str(i);
+    }
+
+    private static Loan copyOf(Loan l) {
+        return new Loan(l.getTrxId(), l.getBookId(), l.getBookTitle(), l.getBorrower(),
+                l.getBorrowDate(), l.getDueDate(), l.getReturnDate(), l.getStatus(), l.getFine());
+    }
+
+    private static String bookLine(Book b) {
+        return String.join("|",
+                b.getId(),
+                safe(b.getTitle()),
+                safe(b.getAuthor()),
+                String.valueOf(b.getYear()),
+                String.valueOf(b.getStockTotal()),
+                String.valueOf(b.getStockAvail())
+        );
+    }
+
+    private static String loanLine(Loan l) {
+        return String.join("|",
+                l.getTrxId(),
+                l.getBookId(),
+                safe(l.getBookTitle()),
+                safe(l.getBorrower()),
+                l.getBorrowDate().toString(),
+                l.getDueDate().toString(),
+                l.getReturnDate() == null ? "" : l.getReturnDate().toString(),
+                l.getStatus(),
+                String.valueOf(l.getFine())
+        );
     }
 
-    private static void ensureParent(Path p) throws Exception {
+    private static void ensureParent(Path p) throws IOException {
         Path parent = p.getParent();
         if (parent != null && !Files.exists(parent)) {
             Files.createDirectories(parent);
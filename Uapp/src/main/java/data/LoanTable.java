@@ -0,0 +1,454 @@
+package data;
+
+import model.Loan;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Penyimpanan loan ringkas (struct-of-arrays): satu baris = beberapa int/byte/long,
+ * bukan objek Loan dengan 4 String + 3 LocalDate. Teks yang berulang (peminjam, id &
+ * judul buku) disimpan sekali di kamus, tanggal sebagai epoch day.
+ *
+ * Loan dari {@link #asList()} / {@link #find(String)} adalah view yang dibuat saat diminta;
+ * setter-nya langsung menulis ke array. Pengarsipan dan clear() tidak memadatkan array di
+ * tempat, tapi pindah ke {@link Columns} baru: view yang masih dipegang (mis. baris tabel GUI)
+ * mencari barisnya lagi lewat nomor trx, dan loan yang sudah keluar dari tabel tetap terbaca
+ * dari kolom lamanya.
+ */
+class LoanTable {
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** Kolom satu generasi tabel; array diganti (grow) di objek yang sama, generasi baru = objek baru. */
+    private static final class Columns {
+        int[] trx = new int[64];       // >= 0: nomor id "T%05d", < 0: -(indeks kamus) - 1
+        int[] book = new int[64];      // indeks pasangan (bookId, bookTitle)
+        int[] borrower = new int[64];  // indeks kamus
+        int[] borrowDay = new int[64];
+        int[] dueDay = new int[64];
+        int[] returnDay = new int[64];
+        byte[] status = new byte[64];  // indeks ke statusNames
+        long[] fine = new long[64];
+
+        // kamus string; hanya bertambah, jadi dipakai bersama oleh generasi sesudahnya
+        List<String> strings;
+        // pasangan (bookId, bookTitle) -> indeks; judul disimpan per pinjaman karena bisa berubah
+        int[] pairBook = new int[64];
+        int[] pairTitle = new int[64];
+
+        Columns(List<String> strings) { this.strings = strings; }
+    }
+
+    private int size;
+    private Columns cols = new Columns(new ArrayList<>());
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private int pairs;
+    private final Map<Long, Integer> pairIds = new HashMap<>();
+
+    private final List<String> statusNames = new ArrayList<>(List.of(Loan.BORROWED, Loan.RETURNED));
+
+    // id dari sequence selalu naik, jadi trx[] biasanya sudah urut dan bisa di-binary search
+    // tanpa indeks tambahan; map baru dibangun bila ada id yang tidak urut/tidak kanonik
+    private boolean trxAscending = true;
+    private IntIntMap rowByTrx;
+    private final Map<String, Integer> rowByOtherTrx = new HashMap<>();
+
+    private final RowList list = new RowList();
+
+    List<Loan> asList() { return list; }
+
+    int size() { return size; }
+
+    Loan find(String trxId) {
+        int n = trxNumber(trxId, true);
+        int row = n < 0 ? rowOfOther(trxId) : rowOf(n);
+        return row < 0 ? null : new Row(cols, row);
+    }
+
+    private int rowOf(int n) {
+        if (trxAscending) {
+            int i = Arrays.binarySearch(cols.trx, 0, size, n);
+            return i < 0 ? -1 : i;
+        }
+        Integer row = rowByTrx.get(n);
+        return row == null ? -1 : row;
+    }
+
+    private int rowOfOther(String trxId) {
+        Integer row = rowByOtherTrx.get(trxId.toLowerCase(Locale.ROOT));
+        return row == null ? -1 : row;
+    }
+
+    /** Naikkan sequence id transaksi sesuai isi tabel tanpa membuat view per baris. */
+    void observeIds(IdSequence seq) {
+        int max = 0;
+        for (int r = 0; r < size; r++) max = Math.max(max, cols.trx[r]);
+        seq.seed(max);
+        for (String id : rowByOtherTrx.keySet()) seq.observe(id.toUpperCase(Locale.ROOT));
+    }
+
+    synchronized void clear() {
+        size = 0;
+        cols = new Columns(new ArrayList<>());
+        stringIds.clear();
+        pairs = 0;
+        pairIds.clear();
+        trxAscending = true;
+        rowByTrx = null;
+        rowByOtherTrx.clear();
+    }
+
+    /**
+     * Salinan baris [from, to) sebagai tabel terpisah yang tidak ikut berubah. Hanya array kolom
+     * rentang itu dan string yang dirujuknya yang disalin, jadi biayanya sebanding dengan jumlah
+     * baris dan cukup murah untuk diambil selagi lock store dipegang.
+     */
+    synchronized List<Loan> copyOfRange(int from, int to) {
+        LoanTable t = new LoanTable();
+        Columns c = new Columns(new ArrayList<>());
+        c.trx = Arrays.copyOfRange(cols.trx, from, to);
+        c.book = Arrays.copyOfRange(cols.book, from, to);
+        c.borrower = Arrays.copyOfRange(cols.borrower, from, to);
+        c.borrowDay = Arrays.copyOfRange(cols.borrowDay, from, to);
+        c.dueDay = Arrays.copyOfRange(cols.dueDay, from, to);
+        c.returnDay = Arrays.copyOfRange(cols.returnDay, from, to);
+        c.status = Arrays.copyOfRange(cols.status, from, to);
+        c.fine = Arrays.copyOfRange(cols.fine, from, to);
+
+        // kamus & pasangan buku tidak disalin utuh: hanya yang dirujuk rentang ini, dengan indeks baru
+        IntIntMap strRemap = new IntIntMap();
+        IntIntMap pairRemap = new IntIntMap();
+        int n = to - from;
+        c.pairBook = new int[Math.max(1, Math.min(n, pairs))];
+        c.pairTitle = new int[c.pairBook.length];
+        int copiedPairs = 0;
+        for (int r = 0; r < n; r++) {
+            if (c.trx[r] < 0) c.trx[r] = -copyString(-c.trx[r] - 1, c.strings, strRemap) - 1;
+            c.borrower[r] = copyString(c.borrower[r], c.strings, strRemap);
+            int p = c.book[r];
+            Integer q = pairRemap.get(p);
+            if (q == null) {
+                q = copiedPairs++;
+                c.pairBook[q] = copyString(cols.pairBook[p], c.strings, strRemap);
+                c.pairTitle[q] = copyString(cols.pairTitle[p], c.strings, strRemap);
+                pairRemap.putIfAbsent(p, q);
+            }
+            c.book[r] = q;
+        }
+        t.cols = c;
+        t.size = to - from;
+        t.statusNames.clear();
+        t.statusNames.addAll(statusNames);
+        return Collections.unmodifiableList(t.list);
+    }
+
+    private int copyString(int id, List<String> to, IntIntMap remap) {
+        Integer copied = remap.get(id);
+        if (copied != null) return copied;
+        int n = to.size();
+        to.add(cols.strings.get(id));
+        remap.putIfAbsent(id, n);
+        return n;
+    }
+
+    private synchronized void append(Loan l) {
+        if (size == cols.trx.length) grow();
+
+        String trxId = l.getTrxId();
+        int n = trxNumber(trxId, false);
+        if (trxAscending && (n < 0 || (size > 0 && cols.trx[size - 1] >= n))) {
+            trxAscending = false;
+            rebuildTrxIndex();
+        }
+
+        Columns c = cols;
+        int r = size++;
+        c.trx[r] = n >= 0 ? n : -str(trxId) - 1;
+        if (!trxAscending) indexTrx(r);
+
+        c.book[r] = pair(l.getBookId(), l.getBookTitle());
+        c.borrower[r] = str(l.getBorrower());
+        c.borrowDay[r] = day(l.getBorrowDate());
+        c.dueDay[r] = day(l.getDueDate());
+        c.returnDay[r] = day(l.getReturnDate());
+        c.status[r] = statusCode(l.getStatus());
+        c.fine[r] = l.getFine();
+    }
+
+    // baris yang tersisa disalin ke kolom baru; kolom lama dibiarkan utuh untuk view yang masih memegangnya
+    private synchronized void removeRows(boolean[] removed) {
+        Columns old = cols;
+        Columns c = new Columns(old.strings);
+        c.pairBook = old.pairBook;
+        c.pairTitle = old.pairTitle;
+        int w = 0;
+        for (int r = 0; r < size; r++) {
+            if (removed[r]) continue;
+            if (w == c.trx.length) grow(c, w * 2);
+            c.trx[w] = old.trx[r];
+            c.book[w] = old.book[r];
+            c.borrower[w] = old.borrower[r];
+            c.borrowDay[w] = old.borrowDay[r];
+            c.dueDay[w] = old.dueDay[r];
+            c.returnDay[w] = old.returnDay[r];
+            c.status[w] = old.status[r];
+            c.fine[w] = old.fine[r];
+            w++;
+        }
+        cols = c;
+        size = w;
+
+        trxAscending = true;
+        for (int r = 0; r < size && trxAscending; r++) {
+            if (c.trx[r] < 0 || (r > 0 && c.trx[r - 1] >= c.trx[r])) trxAscending = false;
+        }
+        rebuildTrxIndex();
+    }
+
+    private void rebuildTrxIndex() {
+        rowByTrx = null;
+        rowByOtherTrx.clear();
+        if (trxAscending) return;
+        rowByTrx = new IntIntMap();
+        for (int r = 0; r < size; r++) indexTrx(r);
+    }
+
+    private void indexTrx(int r) {
+        int t = cols.trx[r];
+        if (t >= 0) rowByTrx.putIfAbsent(t, r);
+        else rowByOtherTrx.putIfAbsent(cols.strings.get(-t - 1).toLowerCase(Locale.ROOT), r);
+    }
+
+    private void grow() {
+        grow(cols, cols.trx.length * 2);
+    }
+
+    private static void grow(Columns c, int n) {
+        c.trx = Arrays.copyOf(c.trx, n);
+        c.book = Arrays.copyOf(c.book, n);
+        c.borrower = Arrays.copyOf(c.borrower, n);
+        c.borrowDay = Arrays.copyOf(c.borrowDay, n);
+        c.dueDay = Arrays.copyOf(c.dueDay, n);
+        c.returnDay = Arrays.copyOf(c.returnDay, n);
+        c.status = Arrays.copyOf(c.status, n);
+        c.fine = Arrays.copyOf(c.fine, n);
+    }
+
+    // ---------- kamus ----------
+    private int str(String s) {
+        String v = s == null ? "" : s;
+        Integer id = stringIds.get(v);
+        if (id == null) {
+            id = cols.strings.size();
+            cols.strings.add(v);
+            stringIds.put(v, id);
+        }
+        return id;
+    }
+
+    private int pair(String bookId, String title) {
+        int b = str(bookId), t = str(title);
+        long key = ((long) b << 32) | (t & 0xFFFFFFFFL);
+        Integer id = pairIds.get(key);
+        if (id == null) {
+            Columns c = cols;
+            if (pairs == c.pairBook.length) {
+                c.pairBook = Arrays.copyOf(c.pairBook, pairs * 2);
+                c.pairTitle = Arrays.copyOf(c.pairTitle, pairs * 2);
+            }
+            id = pairs++;
+            c.pairBook[id] = b;
+            c.pairTitle[id] = t;
+            pairIds.put(key, id);
+        }
+        return id;
+    }
+
+    private byte statusCode(String s) {
+        int i = statusNames.indexOf(s);
+        if (i < 0) {
+            if (statusNames.size() == Byte.MAX_VALUE) throw new IllegalStateException("Terlalu banyak status loan");
+            statusNames.add(s);
+            i = statusNames.size() - 1;
+        }
+        return (byte) i;
+    }
+
+    /** Nomor dari id kanonik "T" + minimal 5 digit (tanpa nol berlebih), selain itu -1. */
+    private static int trxNumber(String id, boolean ignoreCase) {
+        if (id == null || id.length() < 6) return -1;
+        char c = id.charAt(0);
+        if (c != 'T' && !(ignoreCase && c == 't')) return -1;
+        if (id.length() > 6 && id.charAt(1) == '0') return -1;
+        int n = 0;
+        for (int i = 1; i < id.length(); i++) {
+            int d = id.charAt(i) - '0';
+            if (d < 0 || d > 9 || n > (Integer.MAX_VALUE - d) / 10) return -1;
+            n = n * 10 + d;
+        }
+        return n;
+    }
+
+    private static String trxString(int n) {
+        return String.format("T%05d", n);
+    }
+
+    private static int day(LocalDate d) {
+        return d == null ? NO_DATE : (int) d.toEpochDay();
+    }
+
+    private static LocalDate date(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    // ---------- view ----------
+    private final class Row extends Loan {
+        private final int code;   // nilai trx[] baris ini, untuk mencari ulang sesudah tabel dipadatkan
+        private Columns c;
+        private int row;
+
+        Row(Columns c, int row) {
+            this.c = c;
+            this.row = row;
+            this.code = c.trx[row];
+        }
+
+        // kolom tempat loan ini sekarang; yang sudah keluar dari tabel (diarsipkan) tetap di kolom lamanya
+        private Columns at() {
+            Columns now = cols;
+            if (c != now) {
+                synchronized (LoanTable.this) {
+                    now = cols;
+                    int r = code >= 0 ? rowOf(code) : rowOfOther(c.strings.get(-code - 1));
+                    if (r >= 0) {
+                        c = now;
+                        row = r;
+                    }
+                }
+            }
+            return c;
+        }
+
+        @Override public String getTrxId() {
+            Columns c = at();
+            int t = c.trx[row];
+            return t >= 0 ? trxString(t) : c.strings.get(-t - 1);
+        }
+        @Override public String getBookId() { Columns c = at(); return c.strings.get(c.pairBook[c.book[row]]); }
+        @Override public String getBookTitle() { Columns c = at(); return c.strings.get(c.pairTitle[c.book[row]]); }
+        @Override public String getBorrower() { Columns c = at(); return c.strings.get(c.borrower[row]); }
+        @Override public LocalDate getBorrowDate() { return date(at().borrowDay[row]); }
+        @Override public LocalDate getDueDate() { return date(at().dueDay[row]); }
+        @Override public LocalDate getReturnDate() { return date(at().returnDay[row]); }
+        @Override public String getStatus() { return statusNames.get(at().status[row]); }
+        @Override public long getFine() { return at().fine[row]; }
+
+        // setter dikunci pada tabel supaya tidak hilang saat array sedang di-grow oleh append
+        @Override public void setDueDate(LocalDate dueDate) {
+            synchronized (LoanTable.this) { at().dueDay[row] = day(dueDate); }
+        }
+        @Override public void setReturnDate(LocalDate returnDate) {
+            synchronized (LoanTable.this) { at().returnDay[row] = day(returnDate); }
+        }
+        @Override public void setStatus(String s) {
+            synchronized (LoanTable.this) { at().status[row] = statusCode(s); }
+        }
+        @Override public void setFine(long f) {
+            synchronized (LoanTable.this) { at().fine[row] = f; }
+        }
+
+        // view baru dibuat tiap akses, jadi kesamaan dilihat dari trxId
+        @Override public boolean equals(Object o) {
+            return o instanceof Row && ((Row) o).getTrxId().equals(getTrxId());
+        }
+        @Override public int hashCode() { return getTrxId().hashCode(); }
+    }
+
+    private final class RowList extends AbstractList<Loan> implements RandomAccess {
+        @Override public Loan get(int index) {
+            Objects.checkIndex(index, size);
+            return new Row(cols, index);
+        }
+
+        @Override public int size() { return size; }
+
+        @Override public void add(int index, Loan l) {
+            if (index != size) throw new UnsupportedOperationException("Loan hanya bisa ditambah di akhir");
+            append(l);
+            modCount++;
+        }
+
+        @Override public void clear() {
+            LoanTable.this.clear();
+            modCount++;
+        }
+
+        @Override public boolean removeIf(Predicate<? super Loan> filter) {
+            boolean[] removed = new boolean[size];
+            boolean any = false;
+            for (int r = 0; r < size; r++) {
+                if (filter.test(new Row(cols, r))) {
+                    removed[r] = true;
+                    any = true;
+                }
+            }
+            if (!any) return false;
+            removeRows(removed);
+            modCount++;
+            return true;
+        }
+    }
+
+    /** Map int -> int open addressing untuk indeks trx; key negatif tidak dipakai. */
+    private static final class IntIntMap {
+        private int[] keys = newKeys(1024);
+        private int[] values = new int[1024];
+        private int count;
+
+        private static int[] newKeys(int n) {
+            int[] k = new int[n];
+            Arrays.fill(k, -1);
+            return k;
+        }
+
+        Integer get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+                if (keys[i] == -1) return null;
+            }
+        }
+
+        void putIfAbsent(int key, int value) {
+            if ((count + 1) * 2 > keys.length) rehash(keys.length * 2);
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return;
+                if (keys[i] == -1) {
+                    keys[i] = key;
+                    values[i] = value;
+                    count++;
+                    return;
+                }
+            }
+        }
+
+        private void rehash(int n) {
+            int[] oldKeys = keys, oldValues = values;
+            keys = newKeys(n);
+            values = new int[n];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) putIfAbsent(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int mix(int k) {
+            int h = k * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package data;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Pembaca baris `a|b|c` langsung dari ByteBuffer (jendela file yang dibaca lewat FileChannel).
+ * Tidak memakai regex / String.split: posisi '|' dicatat per baris dan field
+ * baru di-decode menjadi String/angka/tanggal saat diminta.
+ */
+class RecordReader {
+
+    private static final int MAX_FIELDS = 16;
+    // ukuran buffer baca; file yang lebih besar dibaca per jendela. Tidak di-mmap: di Windows file
+    // dengan mapping yang masih hidup tidak bisa ditimpa (Files.move) atau dihapus sampai di-GC
+    private static final int WINDOW = 1 << 26;
+    // potongan minimum untuk parse paralel; lebih kecil dari ini overhead task lebih besar
+    private static final int MIN_CHUNK = 1 << 20;
+
+    private final ByteBuffer buf;
+    private final int end;
+    private final boolean requireNewline;
+    private int pos;
+
+    private final int[] cut = new int[MAX_FIELDS + 1];
+    private int fields;
+
+    private byte[] scratch = new byte[128];
+    private final Map<Integer, LocalDate> dateCache = new HashMap<>();
+
+    /**
+     * @param requireNewline true untuk journal: baris terakhir tanpa '\n' dianggap
+     *                       append yang terpotong dan tidak dibaca.
+     */
+    RecordReader(ByteBuffer buf, int start, int end, boolean requireNewline) {
+        this.buf = buf;
+        this.pos = start;
+        this.end = end;
+        this.requireNewline = requireNewline;
+    }
+
+    interface LineHandler {
+        void line(RecordReader r);
+    }
+
+    /** Baca file per jendela (dipotong di batas baris) lalu panggil handler per baris. */
+    static void forEachLine(Path file, boolean requireNewline, LineHandler handler) throws Exception {
+        forEachWindow(file, (window, limit) -> {
+            RecordReader r = new RecordReader(window, 0, limit, requireNewline);
+            while (r.next()) handler.line(r);
+        });
+    }
+
+    /**
+     * Tiap jendela dipotong menjadi potongan sejajar baris yang di-parse paralel di pool.
+     * Hasil digabung sesuai urutan file; parser mengembalikan null untuk baris yang dilewati.
+     */
+    static <T> List<T> parseParallel(Path file, ForkJoinPool pool, Function<RecordReader, T> parser) throws Exception {
+        List<T> out = new ArrayList<>();
+        forEachWindow(file, (window, limit) -> {
+            int chunk = Math.max(MIN_CHUNK, limit / (pool.getParallelism() * 4) + 1);
+
+            List<Callable<List<T>>> tasks = new ArrayList<>();
+            int start = 0;
+            while (start < limit) {
+                int stop = Math.min(limit, start + chunk);
+                while (stop < limit && window.get(stop - 1) != '\n') stop++;
+
+                int from = start, to = stop;
+                ByteBuffer view = window.duplicate();
+                tasks.add(() -> {
+                    List<T> part = new ArrayList<>();
+                    RecordReader r = new RecordReader(view, from, to, false);
+                    while (r.next()) {
+                        T t = parser.apply(r);
+                        if (t != null) part.add(t);
+                    }
+                    return part;
+                });
+                start = stop;
+            }
+
+            for (Future<List<T>> f : pool.invokeAll(tasks)) {
+                try {
+                    out.addAll(f.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        });
+        return out;
+    }
+
+    private interface WindowHandler {
+        void window(ByteBuffer window, int limit) throws Exception;
+    }
+
+    private static void forEachWindow(Path file, WindowHandler handler) throws Exception {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // satu buffer dipakai ulang untuk semua jendela; +1 supaya file kecil selesai dalam satu putaran
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(ch.size() + 1, WINDOW));
+            boolean eof = false;
+            while (!eof) {
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                int filled = buf.position();
+                if (filled == 0) return;
+
+                int limit = filled;
+                if (!eof) {
+                    // potong di '\n' terakhir supaya tidak ada baris yang terbelah
+                    while (limit > 0 && buf.get(limit - 1) != '\n') limit--;
+                    if (limit == 0) throw new IllegalStateException("Baris terlalu panjang di " + file);
+                }
+                handler.window(buf, limit);
+
+                // sisa baris yang terpotong pindah ke awal buffer untuk jendela berikutnya
+                buf.limit(filled).position(limit);
+                buf.compact();
+            }
+        }
+    }
+
+    /** Maju ke baris berikutnya yang tidak kosong. */
+    boolean next() {
+        while (pos < end) {
+            int start = pos;
+            int nl = start;
+            while (nl < end && buf.get(nl) != '\n') nl++;
+            if (nl == end && requireNewline) {
+                pos = end;
+                return false;
+            }
+            pos = nl + 1;
+
+            int stop = nl;
+            if (stop > start && buf.get(stop - 1) == '\r') stop--;
+            if (isBlank(start, stop)) continue;
+
+            fields = 0;
+            cut[0] = start;
+            for (int i = start; i < stop; i++) {
+                if (buf.get(i) == '|') {
+                    fields++;
+                    if (fields < MAX_FIELDS) cut[fields] = i + 1;
+                }
+            }
+            fields++;
+            if (fields <= MAX_FIELDS) cut[fields] = stop + 1;
+            else cut[MAX_FIELDS] = stop + 1;
+            return true;
+        }
+        return false;
+    }
+
+    int fields() { return fields; }
+
+    private int from(int i) { return cut[i]; }
+    private int to(int i) { return cut[i + 1] - 1; }
+
+    boolean blank(int i) {
+        return isBlank(from(i), to(i));
+    }
+
+    String str(int i) {
+        int a = from(i), len = to(i) - a;
+        if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+        for (int k = 0; k < len; k++) scratch[k] = buf.get(a + k);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    boolean is(int i, String ascii) {
+        int a = from(i), len = to(i) - a;
+        if (len != ascii.length()) return false;
+        for (int k = 0; k < len; k++) {
+            if (buf.get(a + k) != ascii.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    int intAt(int i) {
+        return (int) longAt(i, false);
+    }
+
+    /** Field kosong dibaca 0 (dipakai untuk kolom denda). */
+    long longOrZero(int i) {
+        return longAt(i, true);
+    }
+
+    private long longAt(int i, boolean blankIsZero) {
+        int a = from(i), b = to(i);
+        while (a < b && buf.get(a) == ' ') a++;
+        while (b > a && buf.get(b - 1) == ' ') b--;
+        if (a == b) {
+            if (blankIsZero) return 0;
+            throw new NumberFormatException("Field angka kosong");
+        }
+        boolean neg = buf.get(a) == '-';
+        if (neg || buf.get(a) == '+') a++;
+        if (a == b) throw new NumberFormatException("Field angka tidak valid");
+        long v = 0;
+        for (int k = a; k < b; k++) {
+            int d = buf.get(k) - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException("Field angka tidak valid: " + str(i));
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    /** yyyy-MM-dd tanpa DateTimeFormatter; tanggal yang sama memakai instance yang sama. */
+    LocalDate dateAt(int i) {
+        int a = from(i), b = to(i);
+        if (b - a != 10 || buf.get(a + 4) != '-' || buf.get(a + 7) != '-') {
+            return LocalDate.parse(str(i).trim());
+        }
+        int y = digits(a, 4), m = digits(a + 5, 2), d = digits(a + 8, 2);
+        if (y < 0 || m < 0 || d < 0) return LocalDate.parse(str(i));
+
+        int key = y * 10000 + m * 100 + d;
+        LocalDate cached = dateCache.get(key);
+        if (cached == null) {
+            cached = LocalDate.of(y, m, d);
+            dateCache.put(key, cached);
+        }
+        return cached;
+    }
+
+    LocalDate dateOrNull(int i) {
+        return blank(i) ? null : dateAt(i);
+    }
+
+    private int digits(int a, int n) {
+        int v = 0;
+        for (int k = 0; k < n; k++) {
+            int d = buf.get(a + k) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private boolean isBlank(int a, int b) {
+        for (int k = a; k < b; k++) {
+            byte c = buf.get(k);
+            if (c != ' ' && c != '\t' && c != '\r') return false;
+        }
+        return true;
+    }
+}
@@ -29,6 +29,9 @@ public class Loan {
         this.fine = fine;
     }
 
+    // untuk view yang menyimpan field di tempat lain (lihat data.LoanTable)
+    protected Loan() {}
+
     public String getTrxId() { return trxId; }
     public String getBookId() { return bookId; }
     public String getBookTitle() { return bookTitle; }
@@ -0,0 +1,141 @@
+package service;
+
+import model.Book;
+
+import java.util.*;
+
+/**
+ * Urutan buku (judul, tahun terbaru, tersedia terbanyak) yang dijaga terus sebagai TreeSet,
+ * jadi refresh tabel cukup menelusuri urutan yang sudah jadi. Kunci judul huruf kecil dihitung
+ * sekali per perubahan, bukan di tiap perbandingan. Nilai sama diurutkan menurut urutan masuk
+ * buku, sama seperti sort stabil atas getBooks() dulu.
+ */
+class BookOrder {
+
+    private static final class Entry {
+        final Book book;
+        final String titleKey;
+        final int year;
+        final int avail;
+        final long ord;
+
+        Entry(Book book, long ord) {
+            this.book = book;
+            this.titleKey = book.getTitle().toLowerCase();
+            this.year = book.getYear();
+            this.avail = book.getStockAvail();
+            this.ord = ord;
+        }
+    }
+
+    private final TreeSet<Entry> byTitle = new TreeSet<>(
+            Comparator.<Entry, String>comparing(e -> e.titleKey).thenComparingLong(e -> e.ord));
+    private final TreeSet<Entry> byYear = new TreeSet<>(
+            Comparator.<Entry>comparingInt(e -> -e.year).thenComparingLong(e -> e.ord));
+    private final TreeSet<Entry> byAvail = new TreeSet<>(
+            Comparator.<Entry>comparingInt(e -> -e.avail).thenComparingLong(e -> e.ord));
+
+    private final Map<Book, Entry> entries = new IdentityHashMap<>();
+    private long nextOrd = 0;
+
+    synchronized void rebuild(Collection<Book> books) {
+        byTitle.clear();
+        byYear.clear();
+        byAvail.clear();
+        entries.clear();
+        nextOrd = 0;
+        for (Book b : books) add(b);
+    }
+
+    synchronized void add(Book b) {
+        Entry e = new Entry(b, nextOrd++);
+        entries.put(b, e);
+        byTitle.add(e);
+        byYear.add(e);
+        byAvail.add(e);
+    }
+
+    synchronized void remove(Book b) {
+        Entry e = entries.remove(b);
+        if (e == null) return;
+        byTitle.remove(e);
+        byYear.remove(e);
+        byAvail.remove(e);
+    }
+
+    /** Posisikan ulang buku setelah judul/tahun/stok berubah; hanya urutan yang kuncinya berubah disentuh. */
+    synchronized void changed(Book b) {
+        Entry old = entries.get(b);
+        if (old == null) return;
+        Entry e = new Entry(b, old.ord);
+        entries.put(b, e);
+        // entry lama yang tertinggal di set lain punya kunci set itu yang sama, jadi tetap bisa dihapus lewat e
+        if (!old.titleKey.equals(e.titleKey)) move(byTitle, old, e);
+        if (old.year != e.year) move(byYear, old, e);
+        if (old.avail != e.avail) move(byAvail, old, e);
+    }
+
+    // only != null: hanya buku di himpunan itu (hasil pencarian), urutan tetap sama
+    synchronized List<Book> byTitle(Set<Book> only) { return books(byTitle, only); }
+    synchronized List<Book> byYearDesc(Set<Book> only) { return books(byYear, only); }
+    synchronized List<Book> byAvailDesc(Set<Book> only) { return books(byAvail, only); }
+
+    /**
+     * Pembanding buku dengan urutan yang sama seperti list di atas, untuk menempatkan satu baris
+     * tabel tanpa mengurutkan ulang. Buku yang sudah tidak terdaftar ditaruh di akhir.
+     */
+    Comparator<Book> titleOrder() { return order(byTitle.comparator()); }
+    Comparator<Book> yearOrder() { return order(byYear.comparator()); }
+    Comparator<Book> availOrder() { return order(byAvail.comparator()); }
+    Comparator<Book> insertedOrder() { return order(Comparator.comparingLong(e -> e.ord)); }
+
+    private Comparator<Book> order(Comparator<? super Entry> byEntry) {
+        Comparator<Entry> c = Comparator.nullsLast(byEntry);
+        return (a, b) -> {
+            synchronized (this) {
+                return c.compare(entries.get(a), entries.get(b));
+            }
+        };
+    }
+
+    private static void move(TreeSet<Entry> set, Entry old, Entry e) {
+        set.remove(old);
+        set.add(e);
+    }
+
+    /** Subset dalam urutan masuk (= urutan getBooks()). */
+    synchronized List<Book> inserted(Set<Book> only) {
+        List<Entry> picked = new ArrayList<>(only.size());
+        for (Book b : only) {
+            Entry e = entries.get(b);
+            if (e != null) picked.add(e);
+        }
+        picked.sort(Comparator.comparingLong(e -> e.ord));
+        return unwrap(picked);
+    }
+
+    private List<Book> books(TreeSet<Entry> set, Set<Book> only) {
+        if (only == null) return unwrap(set);
+        if (only.size() * 8L < set.size()) {
+            // hasil sedikit: sort subset-nya saja, O(k log k) alih-alih menelusuri semua
+            List<Entry> picked = new ArrayList<>(only.size());
+            for (Book b : only) {
+                Entry e = entries.get(b);
+                if (e != null) picked.add(e);
+            }
+            picked.sort(set.comparator());
+            return unwrap(picked);
+        }
+        List<Book> out = new ArrayList<>(only.size());
+        for (Entry e : set) {
+            if (only.contains(e.book)) out.add(e.book);
+        }
+        return out;
+    }
+
+    private static List<Book> unwrap(Collection<Entry> entries) {
+        List<Book> out = new ArrayList<>(entries.size());
+        for (Entry e : entries) out.add(e.book);
+        return out;
+    }
+}
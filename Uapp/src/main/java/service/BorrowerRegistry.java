@@ -0,0 +1,132 @@
+package service;
+
+import data.LibraryStore;
+import model.Loan;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Daftar peminjam dengan kunci ternormalisasi ("Habibi" = "habibi " = "HABIBI"), trie awalan
+ * untuk autocomplete, dan buku besar per peminjam (loan aktif + denda tercatat) yang dijaga
+ * bertahap. Yang dihitung hanya loan di memori; loan arsip (sudah RETURNED) tidak ikut, dan dendanya
+ * dikurangkan saat loan diarsipkan supaya angkanya sama dengan sesudah restart.
+ */
+class BorrowerRegistry {
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private static final class Ledger {
+        final String name;
+        final Set<String> active = new LinkedHashSet<>();
+        long charged;
+
+        Ledger(String name) { this.name = name; }
+    }
+
+    private static final class Node {
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        Ledger ledger;
+    }
+
+    private final LibraryStore store;
+    private final Map<String, Ledger> ledgers = new HashMap<>();
+    private Node root = new Node();
+
+    // loan berdenda yang baru diarsipkan; diisi dari dalam lock store, jadi tidak boleh menunggu
+    // lock registry (activeLoans memegangnya sambil memanggil store) dan baru dikurangkan saat dibaca
+    private final Queue<Loan> archived = new ConcurrentLinkedQueue<>();
+
+    BorrowerRegistry(LibraryStore store) {
+        this.store = store;
+    }
+
+    synchronized void rebuild(Collection<Loan> loans) {
+        archived.clear();
+        ledgers.clear();
+        root = new Node();
+        for (Loan l : loans) {
+            if (Loan.BORROWED.equals(l.getStatus())) loanCreated(l);
+            else ledger(l.getBorrower()).charged += l.getFine();
+        }
+    }
+
+    synchronized void loanCreated(Loan l) {
+        ledger(l.getBorrower()).active.add(trxKey(l));
+    }
+
+    synchronized void loanReturned(Loan l) {
+        Ledger g = ledger(l.getBorrower());
+        g.active.remove(trxKey(l));
+        g.charged += l.getFine();
+    }
+
+    /** Sampai limit nama dengan awalan prefix, urut alfabet. */
+    synchronized List<String> suggest(String prefix, int limit) {
+        List<String> out = new ArrayList<>();
+        Node n = root;
+        for (char c : key(prefix).toCharArray()) {
+            n = n.children.get(c);
+            if (n == null) return out;
+        }
+        collect(n, limit, out);
+        return out;
+    }
+
+    synchronized List<Loan> activeLoans(String name) {
+        Ledger g = ledgers.get(key(name));
+        List<Loan> out = new ArrayList<>();
+        if (g == null) return out;
+        for (String t : g.active) {
+            Loan l = store.findLoan(t);
+            if (l != null) out.add(l);
+        }
+        return out;
+    }
+
+    void loansArchived(List<Loan> loans) {
+        archived.addAll(loans);
+    }
+
+    /** Denda yang sudah tercatat saat pengembalian (belum termasuk denda berjalan loan aktif). */
+    synchronized long charged(String name) {
+        for (Loan l; (l = archived.poll()) != null; ) ledger(l.getBorrower()).charged -= l.getFine();
+        Ledger g = ledgers.get(key(name));
+        return g == null ? 0 : g.charged;
+    }
+
+    private void collect(Node n, int limit, List<String> out) {
+        if (out.size() >= limit) return;
+        if (n.ledger != null) out.add(n.ledger.name);
+        for (Node c : n.children.values()) {
+            if (out.size() >= limit) return;
+            collect(c, limit, out);
+        }
+    }
+
+    private Ledger ledger(String name) {
+        String k = key(name);
+        Ledger g = ledgers.get(k);
+        if (g != null) return g;
+
+        g = new Ledger(clean(name));
+        ledgers.put(k, g);
+        Node n = root;
+        for (char c : k.toCharArray()) n = n.children.computeIfAbsent(c, x -> new Node());
+        n.ledger = g;
+        return g;
+    }
+
+    private static String clean(String name) {
+        return SPACES.matcher(name.trim()).replaceAll(" ");
+    }
+
+    static String key(String name) {
+        return CatalogIndex.fold(clean(name));
+    }
+
+    private static String trxKey(Loan l) {
+        return l.getTrxId().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,121 @@
+package service;
+
+import model.Book;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Indeks terbalik katalog: token (huruf kecil, tanpa aksen) dari id, judul, penulis, dan tahun
+ * -> buku. Tiap kata di query dicocokkan sebagai awalan token; semua kata harus cocok (AND).
+ */
+class CatalogIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final TreeMap<String, Set<Book>> postings = new TreeMap<>();
+    private final Map<Book, String[]> tokensOf = new IdentityHashMap<>();
+
+    synchronized void rebuild(Collection<Book> books) {
+        postings.clear();
+        tokensOf.clear();
+        for (Book b : books) add(b);
+    }
+
+    synchronized void add(Book b) {
+        String[] tokens = tokens(b);
+        tokensOf.put(b, tokens);
+        for (String t : tokens) {
+            postings.computeIfAbsent(t, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(b);
+        }
+    }
+
+    synchronized void remove(Book b) {
+        String[] tokens = tokensOf.remove(b);
+        if (tokens == null) return;
+        for (String t : tokens) {
+            Set<Book> set = postings.get(t);
+            if (set != null && set.remove(b) && set.isEmpty()) postings.remove(t);
+        }
+    }
+
+    /** Judul/penulis/tahun berubah: token lama diganti. */
+    synchronized void changed(Book b) {
+        remove(b);
+        add(b);
+    }
+
+    /** Buku yang semua kata query-nya cocok sebagai awalan token. Query kosong -> null (tanpa filter). */
+    synchronized Set<Book> search(String query) {
+        String[] words = split(query);
+        if (words.length == 0) return null;
+
+        // kandidat diambil dari kata dengan postings paling sedikit, kata lain dicek per buku
+        String best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (String w : words) {
+            long size = 0;
+            for (Set<Book> set : prefixRange(w).values()) {
+                size += set.size();
+                if (size >= bestSize) break;
+            }
+            if (size < bestSize) {
+                best = w;
+                bestSize = size;
+            }
+        }
+
+        Set<Book> hits = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Set<Book> set : prefixRange(best).values()) hits.addAll(set);
+
+        for (String w : words) {
+            if (w.equals(best) || hits.isEmpty()) continue;
+            hits.removeIf(b -> !hasPrefix(tokensOf.get(b), w));
+        }
+        return hits;
+    }
+
+    /** Sama dengan search(query).contains(b), tanpa menyentuh postings. */
+    synchronized boolean matches(String query, Book b) {
+        String[] tokens = tokensOf.get(b);
+        if (tokens == null) return false;
+        for (String w : split(query)) {
+            if (!hasPrefix(tokens, w)) return false;
+        }
+        return true;
+    }
+
+    private SortedMap<String, Set<Book>> prefixRange(String prefix) {
+        return postings.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static boolean hasPrefix(String[] tokens, String prefix) {
+        for (String t : tokens) {
+            if (t.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static String[] tokens(Book b) {
+        Set<String> out = new LinkedHashSet<>();
+        Collections.addAll(out, split(b.getId()));
+        Collections.addAll(out, split(b.getTitle()));
+        Collections.addAll(out, split(b.getAuthor()));
+        out.add(String.valueOf(b.getYear()));
+        return out.toArray(new String[0]);
+    }
+
+    static String fold(String s) {
+        String d = Normalizer.normalize(s, Normalizer.Form.NFD);
+        return MARKS.matcher(d).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static String[] split(String s) {
+        if (s == null) return new String[0];
+        String f = fold(s).trim();
+        if (f.isEmpty()) return new String[0];
+        return Arrays.stream(NON_WORD.split(f)).filter(t -> !t.isEmpty()).toArray(String[]::new);
+    }
+}
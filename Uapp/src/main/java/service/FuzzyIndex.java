@@ -0,0 +1,166 @@
+package service;
+
+import model.Book;
+
+import java.util.*;
+
+/**
+ * Pencarian toleran salah ketik untuk judul dan penulis. Kosakata kata (sudah dilipat seperti
+ * {@link CatalogIndex}) diindeks per trigram; kata query hanya dibandingkan (Levenshtein) dengan
+ * kata yang berbagi cukup banyak trigram, lalu buku diurutkan dari total jarak terkecil.
+ */
+class FuzzyIndex {
+
+    private final Map<String, Set<Book>> booksOf = new HashMap<>();
+    private final Map<String, Set<String>> wordsOf = new HashMap<>();   // trigram -> kata
+    private final Map<Book, String[]> vocabOf = new IdentityHashMap<>();
+
+    synchronized void rebuild(Collection<Book> books) {
+        booksOf.clear();
+        wordsOf.clear();
+        vocabOf.clear();
+        for (Book b : books) add(b);
+    }
+
+    synchronized void add(Book b) {
+        String[] words = words(b);
+        vocabOf.put(b, words);
+        for (String w : words) {
+            Set<Book> set = booksOf.get(w);
+            if (set == null) {
+                set = Collections.newSetFromMap(new IdentityHashMap<>());
+                booksOf.put(w, set);
+                for (String g : trigrams(w)) wordsOf.computeIfAbsent(g, k -> new HashSet<>()).add(w);
+            }
+            set.add(b);
+        }
+    }
+
+    synchronized void remove(Book b) {
+        String[] words = vocabOf.remove(b);
+        if (words == null) return;
+        for (String w : words) {
+            Set<Book> set = booksOf.get(w);
+            if (set == null || !set.remove(b) || !set.isEmpty()) continue;
+            booksOf.remove(w);
+            for (String g : trigrams(w)) {
+                Set<String> ws = wordsOf.get(g);
+                if (ws != null && ws.remove(w) && ws.isEmpty()) wordsOf.remove(g);
+            }
+        }
+    }
+
+    synchronized void changed(Book b) {
+        remove(b);
+        add(b);
+    }
+
+    /**
+     * Buku yang tiap kata query-nya punya padanan dalam batas jarak edit, terurut dari total
+     * jarak terkecil lalu judul. Query kosong -> null.
+     */
+    synchronized List<Book> search(String query, int limit) {
+        String[] words = CatalogIndex.split(query);
+        if (words.length == 0) return null;
+
+        Map<Book, Integer> score = null;
+        for (String q : words) {
+            Map<Book, Integer> best = new IdentityHashMap<>();
+            for (Map.Entry<String, Integer> near : nearWords(q).entrySet()) {
+                for (Book b : booksOf.get(near.getKey())) best.merge(b, near.getValue(), Math::min);
+            }
+            if (score == null) {
+                score = best;
+            } else {
+                score.keySet().retainAll(best.keySet());
+                score.replaceAll((b, s) -> s + best.get(b));
+            }
+            if (score.isEmpty()) return new ArrayList<>();
+        }
+
+        // ambil limit teratas dengan heap (terbalik), tidak perlu sort semua kandidat
+        Comparator<Map.Entry<Book, Integer>> rank = Comparator.<Map.Entry<Book, Integer>>comparingInt(Map.Entry::getValue)
+                .thenComparing(e -> e.getKey().getTitle(), String.CASE_INSENSITIVE_ORDER);
+        PriorityQueue<Map.Entry<Book, Integer>> top = new PriorityQueue<>(rank.reversed());
+        for (Map.Entry<Book, Integer> e : score.entrySet()) {
+            top.add(e);
+            if (top.size() > limit) top.poll();
+        }
+
+        List<Map.Entry<Book, Integer>> ranked = new ArrayList<>(top);
+        ranked.sort(rank);
+        List<Book> out = new ArrayList<>(ranked.size());
+        for (Map.Entry<Book, Integer> e : ranked) out.add(e.getKey());
+        return out;
+    }
+
+    // kata kosakata dalam batas jarak edit dari q -> jaraknya
+    private Map<String, Integer> nearWords(String q) {
+        Map<String, Integer> out = new HashMap<>();
+        int k = budget(q.length());
+        if (k == 0) {
+            if (booksOf.containsKey(q)) out.put(q, 0);
+            return out;
+        }
+
+        // satu edit merusak paling banyak 3 trigram: kata dengan trigram bersama < n - 3k pasti terlalu jauh
+        Set<String> grams = trigrams(q);
+        int minShared = grams.size() - 3 * k;
+        Map<String, Integer> shared = new HashMap<>();
+        for (String g : grams) {
+            Set<String> ws = wordsOf.get(g);
+            if (ws == null) continue;
+            for (String w : ws) shared.merge(w, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            String w = e.getKey();
+            if (e.getValue() < minShared || Math.abs(w.length() - q.length()) > k) continue;
+            int d = distance(q, w, k);
+            if (d <= k) out.put(w, d);
+        }
+        return out;
+    }
+
+    // kata pendek harus persis; makin panjang makin banyak salah ketik yang ditoleransi
+    private static int budget(int length) {
+        if (length <= 3) return 0;
+        if (length <= 6) return 1;
+        return 2;
+    }
+
+    /** Levenshtein dengan batas: berhenti lebih awal dan mengembalikan k+1 bila pasti > k. */
+    static int distance(String a, String b, int k) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > k) return k + 1;
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[b.length()], k + 1);
+    }
+
+    private static Set<String> trigrams(String w) {
+        String p = "$" + w + "$";
+        Set<String> out = new HashSet<>();
+        for (int i = 0; i + 3 <= p.length(); i++) out.add(p.substring(i, i + 3));
+        return out;
+    }
+
+    private static String[] words(Book b) {
+        Set<String> out = new LinkedHashSet<>();
+        Collections.addAll(out, CatalogIndex.split(b.getTitle()));
+        Collections.addAll(out, CatalogIndex.split(b.getAuthor()));
+        return out.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,35 @@
+package service;
+
+import model.Book;
+import model.Loan;
+
+/**
+ * Perubahan data yang dikirim LibraryService ke listener setelah mutasi berhasil.
+ * Untuk event loan, book = buku yang stok tersedianya ikut berubah.
+ */
+public final class LibraryEvent {
+
+    public enum Type { BOOK_ADDED, BOOK_UPDATED, BOOK_REMOVED, LOAN_CREATED, LOAN_RETURNED }
+
+    private final Type type;
+    private final String bookId;
+    private final Book book;
+    private final Loan loan;
+
+    LibraryEvent(Type type, String bookId, Book book, Loan loan) {
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+        this.loan = loan;
+    }
+
+    public Type getType() { return type; }
+    public String getBookId() { return bookId; }
+    public Book getBook() { return book; }
+    public Loan getLoan() { return loan; }
+
+    @Override
+    public String toString() {
+        return type + "(" + bookId + (loan == null ? "" : ", " + loan.getTrxId()) + ")";
+    }
+}
@@ -0,0 +1,6 @@
+package service;
+
+/** Dipanggil di thread yang melakukan mutasi (belum tentu EDT). */
+public interface LibraryListener {
+    void onChange(LibraryEvent e);
+}
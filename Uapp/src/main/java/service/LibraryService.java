@@ -7,34 +7,80 @@ import model.Loan;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class LibraryService {
 
     public static final int LOAN_DAYS = 7;
     public static final long FINE_PER_DAY = 2000;
+    public static final int FUZZY_LIMIT = 200;
+
+    /** Urutan hasil queryLoans: tanggal pinjam terbaru dulu, lalu trxId terbaru. */
+    public static final Comparator<Loan> HISTORY_ORDER = LoanHistoryIndex.NEWEST_FIRST;
+
+    // lock per buku (di-stripe): pinjam/kembali buku yang berbeda tidak saling menunggu
+    private static final int LOCK_STRIPES = 64;
 
     private final LibraryStore store;
+    private final Object[] bookLocks = new Object[LOCK_STRIPES];
+    private final LibraryStats stats = new LibraryStats();
+    private final OverdueEngine overdue;
+    private final BookOrder order = new BookOrder();
+    private final CatalogIndex catalog = new CatalogIndex();
+    private final FuzzyIndex fuzzy = new FuzzyIndex();
+    private final BorrowerRegistry borrowers;
+    private final LoanHistoryIndex history;
+    private final List<LibraryListener> listeners = new CopyOnWriteArrayList<>();
 
     public LibraryService(LibraryStore store) {
         this.store = store;
+        this.overdue = new OverdueEngine(store);
+        this.borrowers = new BorrowerRegistry(store);
+        store.setArchiveListener(borrowers::loansArchived);
+        this.history = new LoanHistoryIndex(store);
+        for (int i = 0; i < LOCK_STRIPES; i++) bookLocks[i] = new Object();
     }
 
     public LibraryStore getStore() { return store; }
 
-    // ---------- persistence ----------
-    public void load() throws Exception { store.load(); }
-    public void save() throws Exception { store.save(); }
+    // ---------- event ----------
+    public void addListener(LibraryListener l) { listeners.add(l); }
+    public void removeListener(LibraryListener l) { listeners.remove(l); }
 
-    // ---------- stats ----------
-    public int totalCopies() {
-        int sum = 0;
-        for (Book b : store.getBooks()) sum += b.getStockTotal();
-        return sum;
+    // dipanggil selagi lock buku dipegang, jadi urutan event per buku = urutan perubahan; listener harus cepat
+    private void fire(LibraryEvent.Type type, String bookId, Book book, Loan loan) {
+        if (listeners.isEmpty()) return;
+        LibraryEvent e = new LibraryEvent(type, bookId, book, loan);
+        for (LibraryListener l : listeners) l.onChange(e);
     }
 
-    public long borrowedCount() {
-        return store.getLoans().stream().filter(l -> Loan.BORROWED.equals(l.getStatus())).count();
+    // ---------- persistence ----------
+    public void load() throws Exception {
+        store.load();
+        stats.rebuild(store.getBooks(), store.getLoans());
+        overdue.rebuild(store.getLoans());
+        order.rebuild(store.getBooks());
+        catalog.rebuild(store.getBooks());
+        fuzzy.rebuild(store.getBooks());
+        borrowers.rebuild(store.getLoans());
+        // di thread loader, supaya query history pertama tidak menanggung pembangunan indeks
+        history.rebuild();
     }
+    public void save() throws Exception { store.save(); }
+    public void checkpoint() throws Exception { store.checkpoint(); }
+    public void flush() throws Exception { store.flush(); }
+
+    // ---------- stats (dijaga bertahap, O(1) per panggilan) ----------
+    public int totalCopies() { return stats.totalCopies(); }
+    public long borrowedCount() { return stats.borrowed(); }
+    public long overdueCount() { return overdueCount(LocalDate.now()); }
+    public long outstandingFines() { return outstandingFines(LocalDate.now()); }
+    public long overdueCount(LocalDate day) { return overdue.overdueCount(day); }
+    public long outstandingFines(LocalDate day) { return overdue.accruedFines(day); }
+    public int distinctTitles() { return stats.distinctTitles(); }
+    public int unavailableBooks() { return stats.zeroAvail(); }
 
     // ---------- CRUD ----------
     public Book addBook(String title, String author, int year, int total) {
@@ -44,7 +90,12 @@ public class LibraryService {
 
         String id = store.nextBookId();
         Book b = new Book(id, sanitize(title), sanitize(author), year, total, total);
-        store.getBooks().add(b);
+        store.addBook(b);
+        stats.bookAdded(b);
+        order.add(b);
+        catalog.add(b);
+        fuzzy.add(b);
+        fire(LibraryEvent.Type.BOOK_ADDED, b.getId(), b, null);
         return b;
     }
 
@@ -54,24 +105,45 @@ public class LibraryService {
         validateNonEmpty(author, "Penulis");
         if (total <= 0) throw new RuntimeException("Total Buku harus > 0.");
 
-        int borrowed = b.getStockTotal() - b.getStockAvail();
-        if (total < borrowed) throw new RuntimeException("Total Buku tidak boleh < jumlah dipinjam (" + borrowed + ").");
-
-        b.setTitle(sanitize(title));
-        b.setAuthor(sanitize(author));
-        b.setYear(year);
-        b.setStockTotal(total);
-        b.setStockAvail(total - borrowed);
+        synchronized (lockFor(b.getId())) {
+            requireCurrent(b);
+            int borrowed = b.getStockTotal() - b.getStockAvail();
+            if (total < borrowed) throw new RuntimeException("Total Buku tidak boleh < jumlah dipinjam (" + borrowed + ").");
+
+            String oldTitle = b.getTitle();
+            int oldTotal = b.getStockTotal();
+            int oldAvail = b.getStockAvail();
+
+            b.setTitle(sanitize(title));
+            b.setAuthor(sanitize(author));
+            b.setYear(year);
+            b.setStockTotal(total);
+            b.setStockAvail(total - borrowed);
+            store.bookChanged(b);
+            stats.bookChanged(oldTitle, oldTotal, oldAvail, b);
+            order.changed(b);
+            catalog.changed(b);
+            fuzzy.changed(b);
+            fire(LibraryEvent.Type.BOOK_UPDATED, b.getId(), b, null);
+        }
     }
 
     public void deleteBook(String id) {
-        // tidak boleh hapus jika sedang dipinjam
-        for (Loan l : store.getLoans()) {
-            if (l.getBookId().equalsIgnoreCase(id) && Loan.BORROWED.equals(l.getStatus())) {
+        synchronized (lockFor(id)) {
+            // tidak boleh hapus jika sedang dipinjam
+            if (store.hasBorrowedLoan(id)) {
                 throw new RuntimeException("Tidak bisa hapus: buku masih dipinjam.");
             }
+            Book b = store.findBook(id);
+            store.removeBook(id);
+            if (b != null) {
+                stats.bookRemoved(b);
+                order.remove(b);
+                catalog.remove(b);
+                fuzzy.remove(b);
+                fire(LibraryEvent.Type.BOOK_REMOVED, b.getId(), b, null);
+            }
         }
-        store.getBooks().removeIf(b -> b.getId().equalsIgnoreCase(id));
     }
 
     // ---------- borrow/return ----------
@@ -79,36 +151,152 @@ public class LibraryService {
         Book b = requireBook(bookId);
         validateNonEmpty(borrower, "Nama Peminjam");
 
-        if (b.getStockAvail() <= 0) throw new RuntimeException("Tersedia 0. Tidak bisa dipinjam.");
-        b.setStockAvail(b.getStockAvail() - 1);
-
-        String trxId = store.nextLoanId();
-        LocalDate borrowDate = LocalDate.now();
-        LocalDate dueDate = borrowDate.plusDays(LOAN_DAYS);
-
-        Loan loan = new Loan(trxId, b.getId(), b.getTitle(), sanitize(borrower),
-                borrowDate, dueDate, null, Loan.BORROWED, 0);
-
-        store.getLoans().add(loan);
-        return loan;
+        synchronized (lockFor(b.getId())) {
+            requireCurrent(b);
+            if (b.getStockAvail() <= 0) throw new RuntimeException("Tersedia 0. Tidak bisa dipinjam.");
+            b.setStockAvail(b.getStockAvail() - 1);
+
+            String trxId = store.nextLoanId();
+            LocalDate borrowDate = LocalDate.now();
+            LocalDate dueDate = borrowDate.plusDays(LOAN_DAYS);
+
+            Loan loan = new Loan(trxId, b.getId(), b.getTitle(), sanitize(borrower),
+                    borrowDate, dueDate, null, Loan.BORROWED, 0);
+
+            // dicatat selagi lock dipegang supaya urutan record journal = urutan perubahan stok
+            store.addLoan(loan, b);
+            stats.stockMoved(b, -1);
+            order.changed(b);
+            stats.loanCreated();
+            overdue.add(loan);
+            borrowers.loanCreated(loan);
+            fire(LibraryEvent.Type.LOAN_CREATED, b.getId(), b, loan);
+            return loan;
+        }
     }
 
     public Loan returnBook(String trxId) {
         Loan l = requireLoan(trxId);
-        if (Loan.RETURNED.equals(l.getStatus())) throw new RuntimeException("Transaksi sudah RETURNED.");
 
-        Book b = requireBook(l.getBookId());
-        if (b.getStockAvail() >= b.getStockTotal()) throw new RuntimeException("Stok tersedia sudah penuh (data tidak konsisten).");
+        synchronized (lockFor(l.getBookId())) {
+            // dicek ulang di dalam lock: dua pengembalian bersamaan hanya satu yang lolos
+            if (Loan.RETURNED.equals(l.getStatus())) throw new RuntimeException("Transaksi sudah RETURNED.");
+
+            Book b = requireBook(l.getBookId());
+            if (b.getStockAvail() >= b.getStockTotal()) throw new RuntimeException("Stok tersedia sudah penuh (data tidak konsisten).");
+
+            LocalDate now = LocalDate.now();
+            b.setStockAvail(b.getStockAvail() + 1);
+
+            l.setStatus(Loan.RETURNED);
+            l.setReturnDate(now);
+
+            long fine = calculateFine(l.getDueDate(), now);
+            l.setFine(fine);
+            store.loanChanged(l, b);
+            stats.stockMoved(b, +1);
+            order.changed(b);
+            stats.loanReturned();
+            overdue.remove(l);
+            borrowers.loanReturned(l);
+            fire(LibraryEvent.Type.LOAN_RETURNED, b.getId(), b, l);
+            return l;
+        }
+    }
+
+    /**
+     * Pinjam beberapa buku sekaligus untuk satu peminjam. Seluruh batch divalidasi dulu
+     * (buku ada, stok cukup), lalu diterapkan semua atau tidak sama sekali; pemanggil cukup
+     * save() sekali.
+     */
+    public List<Loan> borrowBooks(String borrower, List<String> bookIds) {
+        validateNonEmpty(borrower, "Nama Peminjam");
+        if (bookIds == null || bookIds.isEmpty()) throw new RuntimeException("Tidak ada buku yang dipilih.");
+
+        List<Book> books = new ArrayList<>(bookIds.size());
+        for (String id : bookIds) books.add(requireBook(id));
+
+        return withLocks(books.stream().map(Book::getId).collect(Collectors.toList()), () -> {
+            for (Book b : books) requireCurrent(b);
+            Map<Book, Integer> need = new IdentityHashMap<>();
+            for (Book b : books) need.merge(b, 1, Integer::sum);
+            for (Map.Entry<Book, Integer> e : need.entrySet()) {
+                Book b = e.getKey();
+                if (b.getStockAvail() < e.getValue()) {
+                    throw new RuntimeException("Stok " + b.getId() + " tidak cukup (tersedia " + b.getStockAvail() + ").");
+                }
+            }
 
-        LocalDate now = LocalDate.now();
-        b.setStockAvail(b.getStockAvail() + 1);
+            LocalDate borrowDate = LocalDate.now();
+            LocalDate dueDate = borrowDate.plusDays(LOAN_DAYS);
+            String name = sanitize(borrower);
+
+            List<Loan> created = new ArrayList<>(books.size());
+            for (Book b : books) {
+                b.setStockAvail(b.getStockAvail() - 1);
+                Loan loan = new Loan(store.nextLoanId(), b.getId(), b.getTitle(), name,
+                        borrowDate, dueDate, null, Loan.BORROWED, 0);
+                store.addLoan(loan, b);
+                stats.stockMoved(b, -1);
+                order.changed(b);
+                stats.loanCreated();
+                overdue.add(loan);
+                borrowers.loanCreated(loan);
+                fire(LibraryEvent.Type.LOAN_CREATED, b.getId(), b, loan);
+                created.add(loan);
+            }
+            return created;
+        });
+    }
 
-        l.setStatus(Loan.RETURNED);
-        l.setReturnDate(now);
+    /**
+     * Kembalikan beberapa transaksi sekaligus. Kalau satu saja tidak valid (tidak ada, sudah
+     * RETURNED, dobel) tidak ada yang diubah.
+     */
+    public List<Loan> returnBooks(List<String> trxIds) {
+        if (trxIds == null || trxIds.isEmpty()) throw new RuntimeException("Tidak ada transaksi yang dipilih.");
+
+        List<Loan> loans = new ArrayList<>(trxIds.size());
+        List<String> bookIds = new ArrayList<>(trxIds.size());
+        for (String trxId : trxIds) {
+            Loan l = requireLoan(trxId);
+            loans.add(l);
+            bookIds.add(l.getBookId());
+        }
 
-        long fine = calculateFine(l.getDueDate(), now);
-        l.setFine(fine);
-        return l;
+        return withLocks(bookIds, () -> {
+            // dari trxId, bukan identitas objek: di mode ringkas tiap findLoan membuat view baru
+            Set<String> seen = new HashSet<>();
+            Map<Book, Integer> back = new IdentityHashMap<>();
+            for (Loan l : loans) {
+                if (!seen.add(l.getTrxId().toLowerCase(Locale.ROOT))) throw new RuntimeException("Transaksi " + l.getTrxId() + " dipilih dua kali.");
+                if (Loan.RETURNED.equals(l.getStatus())) throw new RuntimeException("Transaksi " + l.getTrxId() + " sudah RETURNED.");
+                back.merge(requireBook(l.getBookId()), 1, Integer::sum);
+            }
+            for (Map.Entry<Book, Integer> e : back.entrySet()) {
+                Book b = e.getKey();
+                if (b.getStockAvail() + e.getValue() > b.getStockTotal()) {
+                    throw new RuntimeException("Stok tersedia " + b.getId() + " melebihi total (data tidak konsisten).");
+                }
+            }
+
+            LocalDate now = LocalDate.now();
+            for (Loan l : loans) {
+                Book b = store.findBook(l.getBookId());
+                b.setStockAvail(b.getStockAvail() + 1);
+                l.setStatus(Loan.RETURNED);
+                l.setReturnDate(now);
+                l.setFine(calculateFine(l.getDueDate(), now));
+                store.loanChanged(l, b);
+                stats.stockMoved(b, +1);
+                order.changed(b);
+                stats.loanReturned();
+                overdue.remove(l);
+                borrowers.loanReturned(l);
+                fire(LibraryEvent.Type.LOAN_RETURNED, b.getId(), b, l);
+            }
+            return loans;
+        });
     }
 
     public long calculateFine(LocalDate dueDate, LocalDate actualReturnDate) {
@@ -127,30 +315,150 @@ public class LibraryService {
     }
 
     // ---------- sorting ----------
+    // urutan dijaga BookOrder; di sini hanya ditelusuri
     public List<Book> getBooksSorted(String mode) {
-        List<Book> copy = new ArrayList<>(store.getBooks());
-
-        if ("Judul (A-Z)".equals(mode)) {
-            copy.sort(Comparator.comparing(b -> b.getTitle().toLowerCase()));
-        } else if ("Tahun (Terbaru)".equals(mode)) {
-            copy.sort((a, b) -> Integer.compare(b.getYear(), a.getYear()));
-        } else if ("Tersedia (Banyak)".equals(mode)) {
-            copy.sort((a, b) -> Integer.compare(b.getStockAvail(), a.getStockAvail()));
-        }
-        return copy;
+        return sorted(mode, null);
+    }
+
+    /**
+     * Buku yang cocok dengan query (awalan kata pada id/judul/penulis/tahun, tanpa beda huruf
+     * besar/aksen), dalam urutan mode. Query kosong = semua buku.
+     */
+    public List<Book> searchBooks(String query, String mode) {
+        return sorted(mode, catalog.search(query));
+    }
+
+    /** Urutan list getBooksSorted/searchBooks untuk mode ini, untuk menempatkan satu buku yang berubah. */
+    public Comparator<Book> bookOrder(String mode) {
+        if ("Judul (A-Z)".equals(mode)) return order.titleOrder();
+        if ("Tahun (Terbaru)".equals(mode)) return order.yearOrder();
+        if ("Tersedia (Banyak)".equals(mode)) return order.availOrder();
+        return order.insertedOrder();
+    }
+
+    /** Apakah buku ini termasuk hasil searchBooks(query, ...). */
+    public boolean matchesSearch(String query, Book b) {
+        return catalog.matches(query, b);
+    }
+
+    /**
+     * Pencarian toleran salah ketik pada judul/penulis ("Rifaad" menemukan "Rifad"), terurut dari
+     * yang paling mirip. Query kosong = semua buku urutan default.
+     */
+    public List<Book> searchBooksFuzzy(String query) {
+        List<Book> ranked = fuzzy.search(query, FUZZY_LIMIT);
+        return ranked == null ? store.copyOfBooks() : ranked;
+    }
+
+    private List<Book> sorted(String mode, Set<Book> only) {
+        if ("Judul (A-Z)".equals(mode)) return order.byTitle(only);
+        if ("Tahun (Terbaru)".equals(mode)) return order.byYearDesc(only);
+        if ("Tersedia (Banyak)".equals(mode)) return order.byAvailDesc(only);
+        return only == null ? store.copyOfBooks() : order.inserted(only);
     }
 
     public List<Loan> getLoans() {
         return store.getLoans();
     }
 
+    /** Loan BORROWED yang lewat jatuh tempo per tanggal day, paling lama telat lebih dulu. */
+    public List<Loan> getOverdueLoans(LocalDate day) {
+        return overdue.overdueAsOf(day);
+    }
+
+    /** Loan BORROWED yang jatuh tempo dalam days hari dari day (inklusif). */
+    public List<Loan> getLoansDueWithin(LocalDate day, int days) {
+        return overdue.dueWithin(day, days);
+    }
+
+    // ---------- peminjam ----------
+    /** Nama peminjam terdaftar dengan awalan prefix (tanpa beda huruf besar/aksen/spasi), untuk autocomplete. */
+    public List<String> suggestBorrowers(String prefix, int limit) {
+        return borrowers.suggest(prefix, limit);
+    }
+
+    /** Loan BORROWED milik peminjam ini; O(jumlah pinjaman aktifnya). */
+    public List<Loan> getBorrowerLoans(String borrower) {
+        return borrowers.activeLoans(borrower);
+    }
+
+    /**
+     * Denda peminjam: yang tercatat saat pengembalian + denda berjalan pinjaman aktif yang telat.
+     * Loan yang sudah diarsipkan tidak ikut dihitung.
+     */
+    public long borrowerFines(String borrower) {
+        long sum = borrowers.charged(borrower);
+        LocalDate today = LocalDate.now();
+        for (Loan l : borrowers.activeLoans(borrower)) sum += currentFineIfLate(l, today);
+        return sum;
+    }
+
+    /** Siapa saja yang sedang meminjam buku ini (loan BORROWED). */
+    public List<Loan> getActiveLoans(String bookId) {
+        return store.getActiveLoans(bookId);
+    }
+
+    /**
+     * Satu halaman history dari indeks tanggal pinjam, terbaru dulu (tanggal pinjam, lalu trxId).
+     * status null = semua; borrower = awalan nama (tanpa beda huruf besar/aksen/spasi), kosong =
+     * semua; from/to inklusif, null = tanpa batas. Loan arsip ikut bila rentangnya tercakup.
+     */
+    public List<Loan> queryLoans(String status, LocalDate from, LocalDate to, String borrower,
+                                 int offset, int limit) throws Exception {
+        return history.page(status, from, to, borrower, null, Math.max(0, offset), limit);
+    }
+
+    /**
+     * Halaman berikutnya sesudah loan after (baris terakhir halaman sebelumnya). Tidak perlu
+     * melewati offset, dan tetap benar walau loan baru masuk di atas sejak halaman sebelumnya.
+     */
+    public List<Loan> queryLoansAfter(String status, LocalDate from, LocalDate to, String borrower,
+                                      Loan after, int limit) throws Exception {
+        return history.page(status, from, to, borrower, after, 0, limit);
+    }
+
+    /** Apakah loan lolos filter queryLoans yang sama (tanpa melihat halaman). */
+    public boolean matchesLoanQuery(Loan l, String status, LocalDate from, LocalDate to, String borrower) {
+        LocalDate d = l.getBorrowDate();
+        if (from != null && d.isBefore(from)) return false;
+        if (to != null && d.isAfter(to)) return false;
+        String who = borrower == null ? "" : BorrowerRegistry.key(borrower);
+        return LoanHistoryIndex.accepts(l, status, who, new HashMap<>());
+    }
+
     // ---------- helpers ----------
+    private Object lockFor(String bookId) {
+        return bookLocks[stripeOf(bookId)];
+    }
+
+    private int stripeOf(String bookId) {
+        return Math.floorMod(bookId.toLowerCase(Locale.ROOT).hashCode(), LOCK_STRIPES);
+    }
+
+    // ambil lock semua stripe yang terlibat dengan urutan naik supaya dua batch tidak deadlock
+    private <T> T withLocks(Collection<String> bookIds, Supplier<T> body) {
+        int[] stripes = bookIds.stream().mapToInt(this::stripeOf).distinct().sorted().toArray();
+        return lockAll(stripes, 0, body);
+    }
+
+    private <T> T lockAll(int[] stripes, int i, Supplier<T> body) {
+        if (i == stripes.length) return body.get();
+        synchronized (bookLocks[stripes[i]]) {
+            return lockAll(stripes, i + 1, body);
+        }
+    }
+
     private Book requireBook(String id) {
         Book b = store.findBook(id);
         if (b == null) throw new RuntimeException("Buku tidak ditemukan: " + id);
         return b;
     }
 
+    // buku dicari sebelum lock diambil: bisa saja sudah dihapus (atau diganti) selagi menunggu lock
+    private void requireCurrent(Book b) {
+        if (store.findBook(b.getId()) != b) throw new RuntimeException("Buku tidak ditemukan: " + b.getId());
+    }
+
     private Loan requireLoan(String trxId) {
         Loan l = store.findLoan(trxId);
         if (l == null) throw new RuntimeException("Transaksi tidak ditemukan: " + trxId);
@@ -0,0 +1,74 @@
+package service;
+
+import model.Book;
+import model.Loan;
+
+import java.util.*;
+
+/**
+ * Angka dashboard yang dijaga bertahap oleh LibraryService: dihitung penuh sekali saat load,
+ * sesudah itu tiap mutasi hanya mengoreksi selisihnya. Telat dan denda (bergantung tanggal)
+ * ada di {@link OverdueEngine}.
+ */
+class LibraryStats {
+
+    private int totalCopies;
+    private long borrowed;
+    private int zeroAvail;
+    private final Map<String, Integer> titles = new HashMap<>();
+
+    synchronized void rebuild(Collection<Book> books, Collection<Loan> loans) {
+        totalCopies = 0;
+        borrowed = 0;
+        zeroAvail = 0;
+        titles.clear();
+        for (Book b : books) bookAdded(b);
+        for (Loan l : loans) {
+            if (Loan.BORROWED.equals(l.getStatus())) borrowed++;
+        }
+    }
+
+    synchronized void bookAdded(Book b) {
+        totalCopies += b.getStockTotal();
+        if (b.getStockAvail() == 0) zeroAvail++;
+        titles.merge(titleKey(b.getTitle()), 1, Integer::sum);
+    }
+
+    synchronized void bookRemoved(Book b) {
+        totalCopies -= b.getStockTotal();
+        if (b.getStockAvail() == 0) zeroAvail--;
+        titles.computeIfPresent(titleKey(b.getTitle()), (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    /** Dipanggil sesudah buku diubah, dengan nilai sebelum perubahan. */
+    synchronized void bookChanged(String oldTitle, int oldTotal, int oldAvail, Book b) {
+        totalCopies += b.getStockTotal() - oldTotal;
+        if (oldAvail == 0) zeroAvail--;
+        if (b.getStockAvail() == 0) zeroAvail++;
+        String oldKey = titleKey(oldTitle);
+        String newKey = titleKey(b.getTitle());
+        if (!oldKey.equals(newKey)) {
+            titles.computeIfPresent(oldKey, (k, n) -> n == 1 ? null : n - 1);
+            titles.merge(newKey, 1, Integer::sum);
+        }
+    }
+
+    /** Stok tersedia berubah sebesar delta (pinjam -1, kembali +1). */
+    synchronized void stockMoved(Book b, int delta) {
+        int before = b.getStockAvail() - delta;
+        if (before == 0) zeroAvail--;
+        if (b.getStockAvail() == 0) zeroAvail++;
+    }
+
+    synchronized void loanCreated() { borrowed++; }
+    synchronized void loanReturned() { borrowed--; }
+
+    synchronized int totalCopies() { return totalCopies; }
+    synchronized long borrowed() { return borrowed; }
+    synchronized int zeroAvail() { return zeroAvail; }
+    synchronized int distinctTitles() { return titles.size(); }
+
+    private static String titleKey(String title) {
+        return title.trim().toLowerCase(Locale.ROOT);
+    }
+}
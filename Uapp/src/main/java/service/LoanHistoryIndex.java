@@ -0,0 +1,160 @@
+package service;
+
+import data.LibraryStore;
+import model.Loan;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Indeks tanggal pinjam untuk history: epoch day -> posisi loan di list aktif, plus hari-hari
+ * arsip yang sudah pernah dibaca. Halaman (terbaru dulu) diambil dengan menelusuri hari mundur
+ * dari kursor sampai halaman penuh, jadi biayanya sebanding dengan ukuran halaman, bukan
+ * jumlah loan. Loan baru tidak perlu didaftarkan: posisi yang belum terindeks disusulkan saat
+ * query, dan generation store yang berubah (load/arsip) membuat indeks dibangun ulang.
+ */
+class LoanHistoryIndex {
+
+    // urutan dalam satu hari: trxId lebih panjang = lebih baru, lalu alfabet
+    static final Comparator<Loan> NEWEST_FIRST = Comparator.<Loan>comparingLong(l -> l.getBorrowDate().toEpochDay())
+            .thenComparingInt(l -> l.getTrxId().length())
+            .thenComparing(l -> l.getTrxId().toLowerCase(Locale.ROOT))
+            .reversed();
+
+    private static final class Positions {
+        int[] pos = new int[4];
+        int size;
+
+        void add(int p) {
+            if (size == pos.length) pos = Arrays.copyOf(pos, size * 2);
+            pos[size++] = p;
+        }
+    }
+
+    private final LibraryStore store;
+    private final TreeMap<Integer, Positions> hotDays = new TreeMap<>();
+    private final TreeMap<Integer, List<Loan>> archiveDays = new TreeMap<>();
+    private final Set<YearMonth> archiveRead = new HashSet<>();
+    private NavigableSet<YearMonth> archiveMonths = new TreeSet<>();
+    private int generation = Integer.MIN_VALUE;
+    private int indexed;
+
+    LoanHistoryIndex(LibraryStore store) {
+        this.store = store;
+    }
+
+    /** Bangun indeks hari untuk loan aktif sekarang (dipanggil saat load, di luar EDT). */
+    synchronized void rebuild() {
+        generation = Integer.MIN_VALUE;
+        sync();
+    }
+
+    /**
+     * Sampai limit loan sesudah kursor after (null = dari awal), terbaru dulu. status null = semua,
+     * borrower dicocokkan sebagai awalan nama ternormalisasi, from/to inklusif (null = tanpa batas).
+     */
+    synchronized List<Loan> page(String status, LocalDate from, LocalDate to, String borrower,
+                                 Loan after, int skip, int limit) throws Exception {
+        String who = borrower == null ? "" : BorrowerRegistry.key(borrower);
+        while (true) {
+            sync();
+            List<Loan> out = walk(status, from, to, who, after, skip, limit);
+            if (out != null) return out;
+            // list loan dipadatkan di tengah penelusuran: ulangi dengan indeks baru
+        }
+    }
+
+    private List<Loan> walk(String status, LocalDate from, LocalDate to, String who,
+                            Loan after, int skip, int limit) throws Exception {
+        List<Loan> out = new ArrayList<>(Math.min(limit, 1024));
+        if (limit <= 0) return out;
+
+        // loan BORROWED tidak pernah diarsipkan; nama peminjam berulang, jadi hasil cocoknya diingat
+        boolean withArchive = !Loan.BORROWED.equals(status);
+        Map<String, Boolean> nameMatch = new HashMap<>();
+
+        int lo = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        int day = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+        if (after != null) day = Math.min(day, (int) after.getBorrowDate().toEpochDay());
+
+        while (day >= lo) {
+            Integer hot = hotDays.floorKey(day);
+            Integer cold = withArchive ? archiveFloor(day) : null;
+            if (hot == null && cold == null) break;
+            int d = Math.max(hot == null ? Integer.MIN_VALUE : hot, cold == null ? Integer.MIN_VALUE : cold);
+            if (d < lo) break;
+
+            List<Loan> loans = new ArrayList<>();
+            Positions p = hotDays.get(d);
+            if (p != null) {
+                List<Loan> resolved = store.loansAt(generation, p.pos, p.size);
+                if (resolved == null) return null;
+                loans.addAll(resolved);
+            }
+            List<Loan> archived = withArchive ? archiveDays.get(d) : null;
+            if (archived != null) loans.addAll(archived);
+            loans.sort(NEWEST_FIRST);
+
+            for (Loan l : loans) {
+                if (after != null && NEWEST_FIRST.compare(l, after) <= 0) continue;
+                if (!accepts(l, status, who, nameMatch)) continue;
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                out.add(l);
+                if (out.size() >= limit) return out;
+            }
+            if (d == Integer.MIN_VALUE) break;
+            day = d - 1;
+        }
+        return out;
+    }
+
+    /** Filter status dan peminjam (who sudah berupa key); tanggal dicek pemanggil. */
+    static boolean accepts(Loan l, String status, String who, Map<String, Boolean> nameMatch) {
+        if (status != null && !status.equals(l.getStatus())) return false;
+        return who.isEmpty() || nameMatch.computeIfAbsent(l.getBorrower(), n -> BorrowerRegistry.key(n).startsWith(who));
+    }
+
+    // hari arsip terakhir <= day; segmen bulanan dibaca saat pertama kali dilewati
+    private Integer archiveFloor(int day) throws Exception {
+        YearMonth m = archiveMonths.floor(YearMonth.from(LocalDate.ofEpochDay(day)));
+        while (m != null) {
+            if (archiveRead.add(m)) {
+                for (Loan l : store.getArchivedLoans(m.atDay(1), m.atEndOfMonth())) {
+                    archiveDays.computeIfAbsent((int) l.getBorrowDate().toEpochDay(), k -> new ArrayList<>()).add(l);
+                }
+            }
+            int first = (int) m.atDay(1).toEpochDay();
+            Integer d = archiveDays.floorKey(day);
+            if (d != null && d >= first) return d;
+            day = first - 1;
+            m = archiveMonths.lower(m);
+        }
+        return null;
+    }
+
+    // susulkan loan yang di-append sejak query terakhir, atau bangun ulang bila generation berubah
+    private void sync() {
+        while (true) {
+            int g = store.getLoanGeneration();
+            if (g != generation) {
+                hotDays.clear();
+                archiveDays.clear();
+                archiveRead.clear();
+                archiveMonths = store.getArchiveMonths();
+                generation = g;
+                indexed = 0;
+            }
+            int[] days = store.loanDays(generation, indexed);
+            if (days == null) continue;
+            for (int i = 0; i < days.length; i++) {
+                hotDays.computeIfAbsent(days[i], k -> new Positions()).add(indexed + i);
+            }
+            indexed += days.length;
+            return;
+        }
+    }
+}
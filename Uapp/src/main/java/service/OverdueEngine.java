@@ -0,0 +1,113 @@
+package service;
+
+import data.LibraryStore;
+import model.Loan;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Indeks loan BORROWED terurut jatuh tempo (epoch day -> trxId). Query "telat per tanggal D"
+ * dan "jatuh tempo N hari ke depan" cukup headMap/subMap: O(log n + k). Total denda berjalan
+ * disimpan untuk satu tanggal dan dimajukan per hari tanpa menghitung ulang semua loan.
+ */
+class OverdueEngine {
+
+    private final LibraryStore store;
+    private final TreeMap<Long, Set<String>> byDue = new TreeMap<>();
+
+    // posisi total berjalan: loan dengan due < asOf dan denda akumulasinya per asOf
+    private long asOf = Long.MIN_VALUE;
+    private long overdue;
+    private long fines;
+
+    OverdueEngine(LibraryStore store) {
+        this.store = store;
+    }
+
+    synchronized void rebuild(Collection<Loan> loans) {
+        byDue.clear();
+        for (Loan l : loans) {
+            if (Loan.BORROWED.equals(l.getStatus())) add(l);
+        }
+        asOf = Long.MIN_VALUE;
+    }
+
+    synchronized void add(Loan l) {
+        long due = l.getDueDate().toEpochDay();
+        byDue.computeIfAbsent(due, k -> new LinkedHashSet<>()).add(key(l));
+        if (due < asOf) {
+            overdue++;
+            fines += (asOf - due) * LibraryService.FINE_PER_DAY;
+        }
+    }
+
+    synchronized void remove(Loan l) {
+        long due = l.getDueDate().toEpochDay();
+        Set<String> trx = byDue.get(due);
+        if (trx == null || !trx.remove(key(l))) return;
+        if (trx.isEmpty()) byDue.remove(due);
+        if (due < asOf) {
+            overdue--;
+            fines -= (asOf - due) * LibraryService.FINE_PER_DAY;
+        }
+    }
+
+    synchronized long overdueCount(LocalDate day) {
+        advanceTo(day.toEpochDay());
+        return overdue;
+    }
+
+    synchronized long accruedFines(LocalDate day) {
+        advanceTo(day.toEpochDay());
+        return fines;
+    }
+
+    /** Loan yang sudah lewat jatuh tempo per tanggal day, yang paling lama telat lebih dulu. */
+    synchronized List<Loan> overdueAsOf(LocalDate day) {
+        return resolve(byDue.headMap(day.toEpochDay(), false));
+    }
+
+    /** Loan yang jatuh tempo di antara day..day+days (inklusif). */
+    synchronized List<Loan> dueWithin(LocalDate day, int days) {
+        long from = day.toEpochDay();
+        return resolve(byDue.subMap(from, true, from + days, true));
+    }
+
+    private void advanceTo(long day) {
+        if (day == asOf) return;
+        if (day < asOf || asOf == Long.MIN_VALUE) {
+            // mundur (jam diubah) atau belum pernah dihitung: hitung ulang dari awal
+            overdue = 0;
+            fines = 0;
+            for (Map.Entry<Long, Set<String>> e : byDue.headMap(day, false).entrySet()) {
+                overdue += e.getValue().size();
+                fines += e.getValue().size() * (day - e.getKey()) * LibraryService.FINE_PER_DAY;
+            }
+            asOf = day;
+            return;
+        }
+        // yang sudah telat bertambah dendanya; yang jatuh tempo di [asOf, day) baru mulai telat
+        fines += overdue * (day - asOf) * LibraryService.FINE_PER_DAY;
+        for (Map.Entry<Long, Set<String>> e : byDue.subMap(asOf, true, day, false).entrySet()) {
+            overdue += e.getValue().size();
+            fines += e.getValue().size() * (day - e.getKey()) * LibraryService.FINE_PER_DAY;
+        }
+        asOf = day;
+    }
+
+    private List<Loan> resolve(SortedMap<Long, Set<String>> range) {
+        List<Loan> out = new ArrayList<>();
+        for (Set<String> trx : range.values()) {
+            for (String t : trx) {
+                Loan l = store.findLoan(t);
+                if (l != null) out.add(l);
+            }
+        }
+        return out;
+    }
+
+    private static String key(Loan l) {
+        return l.getTrxId().toLowerCase(Locale.ROOT);
+    }
+}
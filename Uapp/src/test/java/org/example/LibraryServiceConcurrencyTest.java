@@ -0,0 +1,347 @@
+package org.example;
+
+import data.LibraryStore;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import model.Book;
+import model.Loan;
+import service.LibraryService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress test pinjam/kembali paralel: stok tidak boleh minus, tidak ada over-lending,
+ * dan stok tersedia + loan BORROWED selalu = total buku.
+ */
+public class LibraryServiceConcurrencyTest
+    extends TestCase
+{
+    private static final int BOOKS = 8;
+    private static final int COPIES = 3;
+    private static final int THREADS = 16;
+    private static final int OPS_PER_THREAD = 4000;
+
+    public LibraryServiceConcurrencyTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LibraryServiceConcurrencyTest.class );
+    }
+
+    public void testParallelBorrowReturnConservesStock() throws Exception
+    {
+        runStress( false );
+    }
+
+    public void testParallelBorrowReturnConservesStockCompact() throws Exception
+    {
+        runStress( true );
+    }
+
+    public void testConcurrentReturnOfSameLoanSucceedsOnce() throws Exception
+    {
+        LibraryService service = newService( false );
+        Book b = service.addBook( "Judul", "Penulis", 2000, 1 );
+
+        for ( int round = 0; round < 200; round++ )
+        {
+            Loan loan = service.borrowBook( b.getId(), "P" + round );
+            AtomicInteger ok = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch( 1 );
+            ExecutorService pool = Executors.newFixedThreadPool( 4 );
+            for ( int i = 0; i < 4; i++ )
+            {
+                pool.submit( () -> {
+                    start.await();
+                    try
+                    {
+                        service.returnBook( loan.getTrxId() );
+                        ok.incrementAndGet();
+                    }
+                    catch ( RuntimeException expected )
+                    {
+                        // sudah dikembalikan thread lain
+                    }
+                    return null;
+                } );
+            }
+            start.countDown();
+            pool.shutdown();
+            assertTrue( pool.awaitTermination( 10, TimeUnit.SECONDS ) );
+            assertEquals( 1, ok.get() );
+            assertEquals( 1, b.getStockAvail() );
+        }
+    }
+
+    public void testBackgroundSearchWhileCatalogChanges() throws Exception
+    {
+        LibraryService service = newService( false );
+        for ( int i = 0; i < 50; i++ ) service.addBook( "Judul " + i, "Penulis", 2000, 1 );
+
+        // seperti thread book-search: query kosong menyalin seluruh list buku sementara UI mengubahnya
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger done = new AtomicInteger();
+        Thread search = new Thread( () -> {
+            try
+            {
+                while ( done.get() == 0 )
+                {
+                    for ( List<Book> result : Arrays.asList( service.searchBooks( "", "Default" ), service.searchBooksFuzzy( "" ) ) )
+                    {
+                        for ( Book b : result ) assertNotNull( "salinan list buku robek", b );
+                    }
+                }
+            }
+            catch ( Throwable t )
+            {
+                failure.set( t );
+            }
+        } );
+        search.start();
+        for ( int i = 0; i < 5000; i++ )
+        {
+            Book b = service.addBook( "Baru " + i, "Penulis", 2001, 1 );
+            service.deleteBook( b.getId() );
+        }
+        done.set( 1 );
+        search.join( 10000 );
+        if ( failure.get() != null ) throw new AssertionError( failure.get() );
+    }
+
+    public void testConcurrentBorrowNeverExceedsStock() throws Exception
+    {
+        for ( boolean compact : new boolean[] { false, true } )
+        {
+            LibraryService service = newService( compact );
+            for ( int round = 0; round < 50; round++ )
+            {
+                // stok N, 4N thread meminjam bersamaan: tepat N yang berhasil
+                Book b = service.addBook( "Judul " + round, "Penulis", 2000, COPIES );
+                List<Callable<Loan>> calls = new ArrayList<>();
+                for ( int i = 0; i < COPIES * 4; i++ )
+                {
+                    String name = "P" + i;
+                    calls.add( () -> service.borrowBook( b.getId(), name ) );
+                }
+                int ok = 0;
+                for ( Future<Loan> f : runTogether( calls ) )
+                {
+                    try
+                    {
+                        assertNotNull( f.get() );
+                        ok++;
+                    }
+                    catch ( ExecutionException soldOut )
+                    {
+                        assertTrue( soldOut.getCause() instanceof RuntimeException );
+                    }
+                }
+                assertEquals( COPIES, ok );
+                assertEquals( 0, service.getStore().findBook( b.getId() ).getStockAvail() );
+                assertEquals( COPIES, service.getActiveLoans( b.getId() ).size() );
+                assertEquals( COPIES, countBorrowed( service, b.getId() ) );
+            }
+        }
+    }
+
+    public void testBorrowRacingDeleteNeverLendsDeletedBook() throws Exception
+    {
+        LibraryService service = newService( false );
+        for ( int round = 0; round < 300; round++ )
+        {
+            Book b = service.addBook( "Judul " + round, "Penulis", 2000, 2 );
+            List<Future<Object>> done = runTogether( Arrays.asList(
+                    () -> service.borrowBook( b.getId(), "Budi" ),
+                    () -> {
+                        service.deleteBook( b.getId() );
+                        return "hapus";
+                    } ) );
+            boolean borrowed = succeeded( done.get( 0 ) );
+            boolean deleted = succeeded( done.get( 1 ) ) && service.getStore().findBook( b.getId() ) == null;
+
+            // salah satu menang: pinjam lalu hapus ditolak, atau hapus lalu pinjam ditolak
+            assertTrue( "pinjam dan hapus sama-sama lolos", borrowed != deleted );
+            assertEquals( borrowed ? 1 : 0, countBorrowed( service, b.getId() ) );
+            if ( borrowed ) assertEquals( 1, service.getStore().findBook( b.getId() ).getStockAvail() );
+        }
+        long active = 0;
+        for ( Loan l : service.getStore().getLoans() ) if ( Loan.BORROWED.equals( l.getStatus() ) ) active++;
+        assertEquals( active, service.borrowedCount() );
+    }
+
+    public void testUpdateRacingDeleteNeverRevivesBook() throws Exception
+    {
+        LibraryService service = newService( false );
+        service.getStore().setJournalEnabled( true );
+        List<String> deleted = new ArrayList<>();
+        for ( int round = 0; round < 300; round++ )
+        {
+            Book b = service.addBook( "Judul " + round, "Penulis", 2000, 2 );
+            runTogether( Arrays.asList(
+                    () -> {
+                        service.updateBook( b.getId(), "Judul Baru", "Penulis", 2001, 3 );
+                        return "ubah";
+                    },
+                    () -> {
+                        service.deleteBook( b.getId() );
+                        return "hapus";
+                    } ) );
+            // hapus tidak pernah ditolak (tidak ada pinjaman): buku harus hilang, ubah yang kalah tidak menghidupkannya
+            assertNull( service.getStore().findBook( b.getId() ) );
+            deleted.add( b.getId() );
+        }
+
+        // journal juga tidak boleh menghidupkan lagi buku yang dihapus
+        service.save();
+        service.flush();
+        service.load();
+        for ( String id : deleted ) assertNull( id, service.getStore().findBook( id ) );
+    }
+
+    public void testReturnBooksRejectsSameTrxTwiceCompact() throws Exception
+    {
+        LibraryService service = newService( true );
+        Book b = service.addBook( "Judul", "Penulis", 2000, 3 );
+        Loan l1 = service.borrowBook( b.getId(), "Budi" );
+        service.borrowBook( b.getId(), "Ani" );
+
+        try
+        {
+            service.returnBooks( Arrays.asList( l1.getTrxId(), l1.getTrxId().toLowerCase() ) );
+            fail( "trx yang sama dua kali harus ditolak" );
+        }
+        catch ( RuntimeException expected )
+        {
+            // tidak ada yang diubah
+        }
+        assertEquals( 1, b.getStockAvail() );
+        assertEquals( 2, service.borrowedCount() );
+        assertEquals( Loan.BORROWED, service.getStore().findLoan( l1.getTrxId() ).getStatus() );
+    }
+
+    // semua task dilepas bersamaan supaya benar-benar berebut lock yang sama
+    private static <T> List<Future<T>> runTogether( List<Callable<T>> calls ) throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool( calls.size() );
+        CountDownLatch start = new CountDownLatch( 1 );
+        List<Future<T>> futures = new ArrayList<>();
+        for ( Callable<T> c : calls )
+        {
+            futures.add( pool.submit( () -> {
+                start.await();
+                return c.call();
+            } ) );
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue( pool.awaitTermination( 10, TimeUnit.SECONDS ) );
+        return futures;
+    }
+
+    private static boolean succeeded( Future<?> f ) throws InterruptedException
+    {
+        try
+        {
+            f.get();
+            return true;
+        }
+        catch ( ExecutionException e )
+        {
+            assertTrue( e.getCause() instanceof RuntimeException );
+            return false;
+        }
+    }
+
+    private static int countBorrowed( LibraryService service, String bookId )
+    {
+        int n = 0;
+        for ( Loan l : service.getStore().getLoans() )
+        {
+            if ( l.getBookId().equalsIgnoreCase( bookId ) && Loan.BORROWED.equals( l.getStatus() ) ) n++;
+        }
+        return n;
+    }
+
+    private void runStress( boolean compact ) throws Exception
+    {
+        LibraryService service = newService( compact );
+        List<String> ids = new ArrayList<>();
+        for ( int i = 0; i < BOOKS; i++ )
+        {
+            ids.add( service.addBook( "Buku " + i, "Penulis", 2000, COPIES ).getId() );
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( THREADS );
+        CountDownLatch start = new CountDownLatch( 1 );
+        List<Future<?>> futures = new ArrayList<>();
+        for ( int t = 0; t < THREADS; t++ )
+        {
+            final int seed = t;
+            futures.add( pool.submit( () -> {
+                Random rnd = new Random( seed );
+                Deque<Loan> mine = new ArrayDeque<>();
+                start.await();
+                for ( int i = 0; i < OPS_PER_THREAD; i++ )
+                {
+                    if ( mine.isEmpty() || rnd.nextBoolean() )
+                    {
+                        String id = ids.get( rnd.nextInt( ids.size() ) );
+                        try
+                        {
+                            mine.push( service.borrowBook( id, "T" + seed ) );
+                        }
+                        catch ( RuntimeException soldOut )
+                        {
+                            // stok habis, wajar
+                        }
+                    }
+                    else
+                    {
+                        service.returnBook( mine.pop().getTrxId() );
+                    }
+                }
+                return null;
+            } ) );
+        }
+        start.countDown();
+        for ( Future<?> f : futures ) f.get( 60, TimeUnit.SECONDS );
+        pool.shutdown();
+
+        LibraryStore store = service.getStore();
+        Map<String, Integer> borrowed = new HashMap<>();
+        Set<String> trxIds = new HashSet<>();
+        for ( Loan l : store.getLoans() )
+        {
+            assertTrue( "trxId ganda: " + l.getTrxId(), trxIds.add( l.getTrxId() ) );
+            if ( Loan.BORROWED.equals( l.getStatus() ) ) borrowed.merge( l.getBookId(), 1, Integer::sum );
+        }
+        for ( String id : ids )
+        {
+            Book b = store.findBook( id );
+            int active = borrowed.getOrDefault( id, 0 );
+            assertTrue( b.getStockAvail() >= 0 );
+            assertTrue( active <= COPIES );
+            assertEquals( "stok tidak konservatif untuk " + id, COPIES, b.getStockAvail() + active );
+            assertEquals( active, service.getActiveLoans( id ).size() );
+        }
+    }
+
+    private LibraryService newService( boolean compact ) throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-test" );
+        LibraryStore store = new LibraryStore( dir.resolve( "books.txt" ), dir.resolve( "loans.txt" ) );
+        store.setCompactLoans( compact );
+        LibraryService service = new LibraryService( store );
+        service.load();
+        return service;
+    }
+}
@@ -0,0 +1,541 @@
+package org.example;
+
+import data.LibraryStore;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import model.Book;
+import model.Loan;
+import service.LibraryService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Indeks dan angka yang dijaga bertahap oleh service dibandingkan dengan hitung ulang brute force
+ * atas getBooks()/getLoans() sesudah tiap mutasi.
+ */
+public class LibraryServiceTest
+    extends TestCase
+{
+    private static final String[] MODES = { "Judul (A-Z)", "Tahun (Terbaru)", "Tersedia (Banyak)", "Default" };
+
+    public LibraryServiceTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LibraryServiceTest.class );
+    }
+
+    public void testMaintainedOrderMatchesCopyAndSort() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-service-test" );
+        LibraryService service = new LibraryService( new LibraryStore( dir.resolve( "books.txt" ), dir.resolve( "loans.txt" ) ) );
+        service.load();
+
+        // judul sengaja sering kembar / beda huruf besar saja, supaya urutan nilai sama ikut teruji
+        String[] titles = { "Laskar Pelangi", "laskar pelangi", "Bumi", "Ayat", "bumi", "Negeri 5 Menara" };
+        Random rnd = new Random( 16 );
+        List<Loan> borrowed = new ArrayList<>();
+        for ( int step = 0; step < 600; step++ )
+        {
+            List<Book> books = service.getStore().getBooks();
+            int op = books.isEmpty() ? 0 : rnd.nextInt( 5 );
+            try
+            {
+                if ( op == 0 )
+                {
+                    service.addBook( titles[rnd.nextInt( titles.length )], "Penulis", 1990 + rnd.nextInt( 8 ), 1 + rnd.nextInt( 4 ) );
+                }
+                else if ( op == 1 )
+                {
+                    Book b = books.get( rnd.nextInt( books.size() ) );
+                    service.updateBook( b.getId(), titles[rnd.nextInt( titles.length )], b.getAuthor(), 1990 + rnd.nextInt( 8 ), b.getStockTotal() + rnd.nextInt( 2 ) );
+                }
+                else if ( op == 2 )
+                {
+                    borrowed.add( service.borrowBook( books.get( rnd.nextInt( books.size() ) ).getId(), "peminjam" + rnd.nextInt( 5 ) ) );
+                }
+                else if ( op == 3 && !borrowed.isEmpty() )
+                {
+                    service.returnBook( borrowed.remove( rnd.nextInt( borrowed.size() ) ).getTrxId() );
+                }
+                else if ( op == 4 )
+                {
+                    service.deleteBook( books.get( rnd.nextInt( books.size() ) ).getId() );
+                }
+            }
+            catch ( RuntimeException ignored )
+            {
+                // stok habis / buku masih dipinjam: ditolak service, urutan tetap harus benar
+            }
+
+            for ( String mode : MODES )
+            {
+                List<Book> sorted = service.getBooksSorted( mode );
+                assertEquals( "langkah " + step + ", " + mode, ids( copyAndSort( service, mode ) ), ids( sorted ) );
+                // pembanding yang dipakai tabel untuk menempatkan satu baris sama dengan urutan list
+                Comparator<Book> order = service.bookOrder( mode );
+                for ( int i = 1; i < sorted.size(); i++ )
+                {
+                    assertTrue( "langkah " + step + ", " + mode, order.compare( sorted.get( i - 1 ), sorted.get( i ) ) < 0 );
+                }
+            }
+        }
+    }
+
+    public void testDashboardCountersMatchRecount() throws Exception
+    {
+        LibraryService service = seeded( 13 );
+        Random rnd = new Random( 13 );
+        LocalDate day = LocalDate.now().minusDays( 40 );
+        for ( int step = 0; step < 500; step++ )
+        {
+            mutate( service, rnd, step );
+
+            // hari maju (denda berjalan bertambah), sesekali mundur seperti jam yang diubah
+            day = step % 50 == 49 ? day.minusDays( 20 ) : day.plusDays( rnd.nextInt( 3 ) );
+            List<Book> books = service.getStore().getBooks();
+            int copies = 0, zero = 0;
+            Set<String> titles = new HashSet<>();
+            for ( Book b : books )
+            {
+                copies += b.getStockTotal();
+                if ( b.getStockAvail() == 0 ) zero++;
+                titles.add( b.getTitle().trim().toLowerCase( Locale.ROOT ) );
+            }
+            long borrowed = 0, overdue = 0, fines = 0;
+            for ( Loan l : service.getStore().getLoans() )
+            {
+                if ( !Loan.BORROWED.equals( l.getStatus() ) ) continue;
+                borrowed++;
+                if ( l.getDueDate().isBefore( day ) )
+                {
+                    overdue++;
+                    fines += service.calculateFine( l.getDueDate(), day );
+                }
+            }
+            String at = "langkah " + step;
+            assertEquals( at, copies, service.totalCopies() );
+            assertEquals( at, zero, service.unavailableBooks() );
+            assertEquals( at, titles.size(), service.distinctTitles() );
+            assertEquals( at, borrowed, service.borrowedCount() );
+            assertEquals( at, overdue, service.overdueCount( day ) );
+            assertEquals( at, fines, service.outstandingFines( day ) );
+        }
+    }
+
+    public void testActiveLoansPerBookMatchScan() throws Exception
+    {
+        LibraryService service = seeded( 14 );
+        Random rnd = new Random( 14 );
+        for ( int step = 0; step < 400; step++ )
+        {
+            mutate( service, rnd, step );
+
+            Map<String, Set<String>> expect = new HashMap<>();
+            for ( Loan l : service.getStore().getLoans() )
+            {
+                if ( Loan.BORROWED.equals( l.getStatus() ) ) expect.computeIfAbsent( l.getBookId(), k -> new TreeSet<>() ).add( l.getTrxId() );
+            }
+            for ( Book b : service.getStore().getBooks() )
+            {
+                Set<String> got = new TreeSet<>();
+                for ( Loan l : service.getActiveLoans( b.getId() ) ) got.add( l.getTrxId() );
+                assertEquals( "langkah " + step + ", " + b.getId(), expect.getOrDefault( b.getId(), Collections.emptySet() ), got );
+            }
+        }
+
+        // hapus ditolak tepat bila buku masih punya pinjaman aktif
+        for ( Book b : new ArrayList<>( service.getStore().getBooks() ) )
+        {
+            boolean active = !service.getActiveLoans( b.getId() ).isEmpty();
+            try
+            {
+                service.deleteBook( b.getId() );
+                assertFalse( b.getId(), active );
+            }
+            catch ( RuntimeException e )
+            {
+                assertTrue( b.getId(), active );
+            }
+        }
+    }
+
+    public void testOverdueQueriesMatchScan() throws Exception
+    {
+        LibraryService service = seeded( 15 );
+        Random rnd = new Random( 15 );
+        for ( int step = 0; step < 400; step++ )
+        {
+            mutate( service, rnd, step );
+
+            LocalDate day = LocalDate.now().minusDays( 30 ).plusDays( rnd.nextInt( 45 ) );
+            int days = rnd.nextInt( 10 );
+            Set<String> overdue = new TreeSet<>();
+            Set<String> dueSoon = new TreeSet<>();
+            for ( Loan l : service.getStore().getLoans() )
+            {
+                if ( !Loan.BORROWED.equals( l.getStatus() ) ) continue;
+                LocalDate due = l.getDueDate();
+                if ( due.isBefore( day ) ) overdue.add( l.getTrxId() );
+                if ( !due.isBefore( day ) && !due.isAfter( day.plusDays( days ) ) ) dueSoon.add( l.getTrxId() );
+            }
+            String at = "langkah " + step + ", " + day;
+            assertEquals( at, overdue, trxInDueOrder( service.getOverdueLoans( day ) ) );
+            assertEquals( at, dueSoon, trxInDueOrder( service.getLoansDueWithin( day, days ) ) );
+        }
+    }
+
+    public void testCatalogSearchMatchesBruteForce() throws Exception
+    {
+        LibraryService service = seeded( 17 );
+        String[] extra = { "Café Ñandú", "Über Alles", "Cantik Itu Luka", "Sang Pemimpi", "Perahu Kertas" };
+        String[] authors = { "Andrea Hirata", "Eka Kurniawan", "Dée Lestari", "Ahmad Tohari" };
+        for ( int i = 0; i < 40; i++ ) service.addBook( extra[i % extra.length], authors[i % authors.length], 1980 + i, 1 );
+
+        Random rnd = new Random( 17 );
+        for ( int step = 0; step < 300; step++ )
+        {
+            mutate( service, rnd, step );
+
+            // query: awalan kata dari buku yang ada (huruf besar/aksen diacak), kadang dua kata
+            List<Book> books = service.getStore().getBooks();
+            StringBuilder q = new StringBuilder();
+            for ( int w = 0, n = 1 + rnd.nextInt( 2 ); w < n; w++ )
+            {
+                Book b = books.get( rnd.nextInt( books.size() ) );
+                String[] src = ( b.getId() + " " + b.getTitle() + " " + b.getAuthor() + " " + b.getYear() ).split( " +" );
+                String word = src[rnd.nextInt( src.length )];
+                word = word.substring( 0, 1 + rnd.nextInt( word.length() ) );
+                q.append( rnd.nextBoolean() ? word.toUpperCase( Locale.ROOT ) : fold( word ) ).append( ' ' );
+            }
+            String query = step % 25 == 0 ? "  " : q.toString();
+
+            List<String> expect = new ArrayList<>();
+            for ( Book b : books ) if ( matches( query, b ) ) expect.add( b.getId() );
+            assertEquals( "langkah " + step + ", '" + query + "'", expect, ids( service.searchBooks( query, "Default" ) ) );
+            for ( Book b : books ) assertEquals( query, matches( query, b ), service.matchesSearch( query, b ) );
+        }
+    }
+
+    public void testFuzzySearchMatchesBruteForce() throws Exception
+    {
+        LibraryService service = seeded( 18 );
+        String[] authors = { "Rifad", "Rifaat Hidayat", "Andrea Hirata", "Dée Lestari", "Pramoedya" };
+        for ( int i = 0; i < 30; i++ ) service.addBook( "Bumi Manusia " + i % 4, authors[i % authors.length], 1980 + i, 1 );
+
+        Random rnd = new Random( 18 );
+        for ( int step = 0; step < 300; step++ )
+        {
+            mutate( service, rnd, step );
+
+            // kata dari judul/penulis yang ada, diberi 0..3 salah ketik acak
+            List<Book> books = service.getStore().getBooks();
+            StringBuilder q = new StringBuilder();
+            for ( int w = 0, n = 1 + rnd.nextInt( 2 ); w < n; w++ )
+            {
+                Book b = books.get( rnd.nextInt( books.size() ) );
+                String[] src = fold( b.getTitle() + " " + b.getAuthor() ).split( "[^\\p{L}\\p{N}]+" );
+                q.append( typo( src[rnd.nextInt( src.length )], rnd.nextInt( 4 ), rnd ) ).append( ' ' );
+            }
+            String query = q.toString();
+
+            Map<Book, Integer> expect = new IdentityHashMap<>();
+            for ( Book b : books )
+            {
+                Integer d = fuzzyScore( query, b );
+                if ( d != null ) expect.put( b, d );
+            }
+            assertTrue( expect.size() <= LibraryService.FUZZY_LIMIT );
+
+            List<Book> got = service.searchBooksFuzzy( query );
+            String at = "langkah " + step + ", '" + query + "'";
+            assertEquals( at, expect.size(), got.size() );
+            for ( int i = 0; i < got.size(); i++ )
+            {
+                assertTrue( at, expect.containsKey( got.get( i ) ) );
+                if ( i == 0 ) continue;
+                // peringkat: total jarak terkecil dulu, lalu judul
+                Book a = got.get( i - 1 ), b = got.get( i );
+                int cmp = Integer.compare( expect.get( a ), expect.get( b ) );
+                if ( cmp == 0 ) cmp = String.CASE_INSENSITIVE_ORDER.compare( a.getTitle(), b.getTitle() );
+                assertTrue( at, cmp <= 0 );
+            }
+        }
+    }
+
+    public void testHistoryPagingMatchesSortedFilter() throws Exception
+    {
+        LibraryService service = seeded( 25 );
+        service.checkpoint();
+        service.flush();
+        service = new LibraryService( service.getStore() );
+        service.load();
+        assertFalse( service.getStore().getArchiveMonths().isEmpty() );
+
+        String[] statuses = { null, Loan.BORROWED, Loan.RETURNED };
+        String[] borrowers = { null, "", "bu", "  BUDI ", "ani", "áni  r", "peminjam 1", "x" };
+        Random rnd = new Random( 25 );
+        for ( int step = 0; step < 150; step++ )
+        {
+            mutate( service, rnd, step );
+
+            String status = statuses[rnd.nextInt( statuses.length )];
+            String borrower = borrowers[rnd.nextInt( borrowers.length )];
+            LocalDate from = rnd.nextInt( 3 ) == 0 ? null : LocalDate.of( 2019, 12, 1 ).plusDays( rnd.nextInt( 2700 ) );
+            LocalDate to = rnd.nextInt( 3 ) == 0 ? null : LocalDate.of( 2019, 12, 1 ).plusDays( rnd.nextInt( 2700 ) );
+
+            List<Loan> all = new ArrayList<>( service.getStore().getLoans() );
+            all.addAll( service.getStore().getArchivedLoans( null, null ) );
+            List<String> expect = new ArrayList<>();
+            all.sort( LibraryService.HISTORY_ORDER );
+            for ( Loan l : all ) if ( acceptsHistory( l, status, from, to, borrower ) ) expect.add( l.getTrxId() );
+
+            String at = "langkah " + step + ", " + status + " " + from + ".." + to + " '" + borrower + "'";
+            int offset = rnd.nextInt( expect.size() + 3 ), limit = 1 + rnd.nextInt( 40 );
+            assertEquals( at, expect.subList( Math.min( offset, expect.size() ), Math.min( offset + limit, expect.size() ) ),
+                    trxIds( service.queryLoans( status, from, to, borrower, offset, limit ) ) );
+
+            // keyset: halaman demi halaman sesudah baris terakhir sampai habis
+            List<String> paged = new ArrayList<>();
+            List<Loan> page = service.queryLoans( status, from, to, borrower, 0, limit );
+            while ( !page.isEmpty() )
+            {
+                paged.addAll( trxIds( page ) );
+                page = service.queryLoansAfter( status, from, to, borrower, page.get( page.size() - 1 ), limit );
+            }
+            assertEquals( at, expect, paged );
+        }
+    }
+
+    public void testBorrowerNameStoredAsTyped() throws Exception
+    {
+        // "Budi" sudah terdaftar dari seed: ejaan lain tidak diganti diam-diam, hanya kunci registry yang dinormalisasi
+        LibraryService service = seeded( 19 );
+        Book b = service.addBook( "Judul", "Penulis", 2000, 3 );
+        Loan one = service.borrowBook( b.getId(), "  bUDI  " );
+        Loan two = service.borrowBooks( "BUDI", Collections.singletonList( b.getId() ) ).get( 0 );
+        assertEquals( "bUDI", one.getBorrower() );
+        assertEquals( "BUDI", two.getBorrower() );
+
+        List<String> ledger = trxIds( service.getBorrowerLoans( "budi" ) );
+        assertTrue( ledger.contains( one.getTrxId() ) );
+        assertTrue( ledger.contains( two.getTrxId() ) );
+    }
+
+    // cara lama: salin getBooks() lalu sort stabil
+    private static List<Book> copyAndSort( LibraryService service, String mode )
+    {
+        List<Book> copy = new ArrayList<>( service.getStore().getBooks() );
+        if ( "Judul (A-Z)".equals( mode ) )
+        {
+            copy.sort( Comparator.comparing( b -> b.getTitle().toLowerCase() ) );
+        }
+        else if ( "Tahun (Terbaru)".equals( mode ) )
+        {
+            copy.sort( ( a, b ) -> Integer.compare( b.getYear(), a.getYear() ) );
+        }
+        else if ( "Tersedia (Banyak)".equals( mode ) )
+        {
+            copy.sort( ( a, b ) -> Integer.compare( b.getStockAvail(), a.getStockAvail() ) );
+        }
+        return copy;
+    }
+
+    // katalog + loan 60 hari terakhir (sebagian sudah lewat jatuh tempo) yang konsisten dengan stok,
+    // plus loan 2020-2021 yang sudah kembali
+    private static LibraryService seeded( long seed ) throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-service-test" );
+        Random rnd = new Random( seed );
+        String[] titles = { "Laskar Pelangi", "laskar pelangi ", "Bumi", "Ayat-Ayat Cinta", "Ronggeng Dukuh Paruk" };
+        String[] names = { "Budi", "budi", "Ani", "Áni Rahma", "Rifad" };
+        int[] borrowed = new int[30];
+        List<String> loans = new ArrayList<>();
+        for ( int i = 1; i <= 300; i++ )
+        {
+            int book = rnd.nextInt( borrowed.length );
+            LocalDate b = LocalDate.now().minusDays( rnd.nextInt( 60 ) );
+            boolean out = borrowed[book] < 5 && rnd.nextInt( 3 ) == 0;
+            if ( out ) borrowed[book]++;
+            loans.add( String.format( "T%05d|B%04d|Judul|%s|%s|%s|%s|%s|%d", i, book + 1, names[rnd.nextInt( names.length )], b,
+                    b.plusDays( LibraryService.LOAN_DAYS ), out ? "" : b.plusDays( rnd.nextInt( 10 ) ).toString(),
+                    out ? Loan.BORROWED : Loan.RETURNED, out ? 0 : rnd.nextInt( 3 ) * LibraryService.FINE_PER_DAY ) );
+        }
+        // loan lama yang sudah kembali: dipindah ke arsip saat checkpoint
+        for ( int i = 301; i <= 400; i++ )
+        {
+            LocalDate b = LocalDate.of( 2020, 1, 1 ).plusDays( rnd.nextInt( 600 ) );
+            loans.add( String.format( "T%05d|B%04d|Judul|%s|%s|%s|%s|RETURNED|0", i, 1 + rnd.nextInt( borrowed.length ),
+                    names[rnd.nextInt( names.length )], b, b.plusDays( LibraryService.LOAN_DAYS ), b.plusDays( 3 ) ) );
+        }
+        List<String> books = new ArrayList<>();
+        for ( int i = 0; i < borrowed.length; i++ )
+        {
+            books.add( String.format( "B%04d|%s|Penulis %d|%d|5|%d", i + 1, titles[i % titles.length], i % 7, 1990 + i % 9, 5 - borrowed[i] ) );
+        }
+        Files.write( dir.resolve( "books.txt" ), ( String.join( "\n", books ) + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+        Files.write( dir.resolve( "loans.txt" ), ( String.join( "\n", loans ) + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+        LibraryService service = new LibraryService( new LibraryStore( dir.resolve( "books.txt" ), dir.resolve( "loans.txt" ) ) );
+        service.load();
+        return service;
+    }
+
+    // satu mutasi acak lewat API service; yang ditolak (stok habis, masih dipinjam) diabaikan
+    private static void mutate( LibraryService service, Random rnd, int step )
+    {
+        List<Book> books = service.getStore().getBooks();
+        int op = books.isEmpty() ? 0 : rnd.nextInt( 6 );
+        try
+        {
+            if ( op == 0 )
+            {
+                service.addBook( "Baru " + ( step % 7 ), "Penulis", 2000 + step % 5, 1 + rnd.nextInt( 3 ) );
+            }
+            else if ( op == 1 )
+            {
+                Book b = books.get( rnd.nextInt( books.size() ) );
+                service.updateBook( b.getId(), rnd.nextBoolean() ? b.getTitle() : "Ubah " + ( step % 5 ), b.getAuthor(), b.getYear(), b.getStockTotal() + rnd.nextInt( 3 ) - 1 );
+            }
+            else if ( op == 2 )
+            {
+                service.deleteBook( books.get( rnd.nextInt( books.size() ) ).getId() );
+            }
+            else if ( op == 3 )
+            {
+                service.borrowBook( books.get( rnd.nextInt( books.size() ) ).getId(), "Peminjam " + rnd.nextInt( 4 ) );
+            }
+            else
+            {
+                List<Loan> loans = service.getStore().getLoans();
+                Loan l = loans.get( rnd.nextInt( loans.size() ) );
+                if ( Loan.BORROWED.equals( l.getStatus() ) ) service.returnBook( l.getTrxId() );
+            }
+        }
+        catch ( RuntimeException ignored )
+        {
+            // ditolak service
+        }
+    }
+
+    // hasil query overdue harus urut jatuh tempo (paling lama telat dulu) dan tanpa duplikat
+    private static Set<String> trxInDueOrder( List<Loan> loans )
+    {
+        Set<String> out = new TreeSet<>();
+        for ( int i = 0; i < loans.size(); i++ )
+        {
+            if ( i > 0 ) assertFalse( loans.get( i ).getDueDate().isBefore( loans.get( i - 1 ).getDueDate() ) );
+            assertTrue( out.add( loans.get( i ).getTrxId() ) );
+        }
+        return out;
+    }
+
+    // spesifikasi pencarian katalog: tiap kata query (tanpa aksen, huruf kecil) awalan salah satu kata buku
+    private static boolean matches( String query, Book b )
+    {
+        List<String> tokens = new ArrayList<>();
+        for ( String field : new String[] { b.getId(), b.getTitle(), b.getAuthor(), String.valueOf( b.getYear() ) } )
+        {
+            Collections.addAll( tokens, fold( field ).split( "[^\\p{L}\\p{N}]+" ) );
+        }
+        for ( String w : fold( query ).split( "[^\\p{L}\\p{N}]+" ) )
+        {
+            if ( w.isEmpty() ) continue;
+            boolean hit = false;
+            for ( String t : tokens ) hit |= !t.isEmpty() && t.startsWith( w );
+            if ( !hit ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Spesifikasi fuzzy: tiap kata query punya kata judul/penulis dalam batas jarak edit (panjang
+     * <= 3 persis, <= 6 satu edit, selebihnya dua); skor = jumlah jarak terkecil. null = tidak cocok.
+     */
+    private static Integer fuzzyScore( String query, Book b )
+    {
+        String[] words = fold( b.getTitle() + " " + b.getAuthor() ).split( "[^\\p{L}\\p{N}]+" );
+        int total = 0;
+        boolean any = false;
+        for ( String q : fold( query ).split( "[^\\p{L}\\p{N}]+" ) )
+        {
+            if ( q.isEmpty() ) continue;
+            any = true;
+            int budget = q.length() <= 3 ? 0 : q.length() <= 6 ? 1 : 2;
+            int best = Integer.MAX_VALUE;
+            for ( String w : words ) if ( !w.isEmpty() ) best = Math.min( best, levenshtein( q, w ) );
+            if ( best > budget ) return null;
+            total += best;
+        }
+        return any ? total : null;
+    }
+
+    private static int levenshtein( String a, String b )
+    {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for ( int i = 0; i <= a.length(); i++ ) d[i][0] = i;
+        for ( int j = 0; j <= b.length(); j++ ) d[0][j] = j;
+        for ( int i = 1; i <= a.length(); i++ )
+        {
+            for ( int j = 1; j <= b.length(); j++ )
+            {
+                int cost = a.charAt( i - 1 ) == b.charAt( j - 1 ) ? 0 : 1;
+                d[i][j] = Math.min( Math.min( d[i - 1][j] + 1, d[i][j - 1] + 1 ), d[i - 1][j - 1] + cost );
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String typo( String word, int edits, Random rnd )
+    {
+        StringBuilder sb = new StringBuilder( word );
+        for ( int e = 0; e < edits; e++ )
+        {
+            int at = rnd.nextInt( sb.length() + 1 );
+            char c = (char) ( 'a' + rnd.nextInt( 26 ) );
+            int kind = sb.length() < 2 ? 0 : rnd.nextInt( 3 );
+            if ( kind == 0 ) sb.insert( at, c );
+            else if ( kind == 1 ) sb.deleteCharAt( Math.min( at, sb.length() - 1 ) );
+            else sb.setCharAt( Math.min( at, sb.length() - 1 ), c );
+        }
+        return sb.toString();
+    }
+
+    private static String fold( String s )
+    {
+        return Normalizer.normalize( s, Normalizer.Form.NFD ).replaceAll( "\\p{M}+", "" ).toLowerCase( Locale.ROOT );
+    }
+
+    // spesifikasi filter history: status, tanggal pinjam inklusif, awalan nama tanpa beda huruf besar/aksen/spasi
+    private static boolean acceptsHistory( Loan l, String status, LocalDate from, LocalDate to, String borrower )
+    {
+        if ( status != null && !status.equals( l.getStatus() ) ) return false;
+        if ( from != null && l.getBorrowDate().isBefore( from ) ) return false;
+        if ( to != null && l.getBorrowDate().isAfter( to ) ) return false;
+        String who = borrower == null ? "" : fold( borrower.trim().replaceAll( "\\s+", " " ) );
+        return fold( l.getBorrower().trim().replaceAll( "\\s+", " " ) ).startsWith( who );
+    }
+
+    private static List<String> trxIds( List<Loan> loans )
+    {
+        List<String> out = new ArrayList<>( loans.size() );
+        for ( Loan l : loans ) out.add( l.getTrxId() );
+        return out;
+    }
+
+    private static List<String> ids( List<Book> books )
+    {
+        List<String> out = new ArrayList<>( books.size() );
+        for ( Book b : books ) out.add( b.getId() );
+        return out;
+    }
+}
@@ -0,0 +1,686 @@
+package org.example;
+
+import data.LibraryStore;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import model.Book;
+import model.Loan;
+import service.LibraryService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Penyimpanan di disk: decoder record, penulisan async, alokasi id, load paralel, replay journal,
+ * snapshot biner, arsip, dan view loan mode ringkas yang melewati pengarsipan.
+ */
+public class LibraryStoreTest
+    extends TestCase
+{
+    public LibraryStoreTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LibraryStoreTest.class );
+    }
+
+    public void testRecordDecoderMatchesStringParsing() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        Random rnd = new Random( 2 );
+        String[] names = { "Budi", "Ani Şahin", "Zoë", "李雷", " spasi " };
+        String[] fines = { "", " 4000 ", "+2000", "-1000", String.valueOf( Long.MAX_VALUE ) };
+
+        List<String> books = new ArrayList<>();
+        for ( int i = 1; i <= 200; i++ )
+        {
+            int total = 1 + rnd.nextInt( 9 );
+            String year = rnd.nextInt( 4 ) == 0 ? " " + ( 1900 + rnd.nextInt( 125 ) ) + " " : String.valueOf( 1900 + rnd.nextInt( 125 ) );
+            books.add( String.format( "B%04d", i ) + "|Judul " + names[i % names.length] + "|Penulis|" + year + "|" + total + "| " + rnd.nextInt( total + 1 ) );
+        }
+        // rentang lebih dari 30 tahun: melewati 29 Februari dan pergantian abad
+        List<String> loans = new ArrayList<>();
+        for ( int i = 1; i <= 5000; i++ )
+        {
+            LocalDate b = LocalDate.of( 1999, 12, 1 ).plusDays( rnd.nextInt( 12000 ) );
+            String ret = rnd.nextInt( 3 ) == 0 ? "" : rnd.nextInt( 10 ) == 0 ? "  " : b.plusDays( rnd.nextInt( 40 ) ).toString();
+            String status = ret.trim().isEmpty() ? Loan.BORROWED : Loan.RETURNED;
+            String fine = rnd.nextInt( 4 ) == 0 ? fines[rnd.nextInt( fines.length )] : String.valueOf( rnd.nextInt( 100000 ) * 1000L );
+            String line = i % 11 == 0
+                    ? String.format( "T%05d", i ) + "|B0001|Judul|" + names[rnd.nextInt( names.length )] + "|" + b + "|" + ret + "|" + status
+                    : String.format( "T%05d", i ) + "|B0001|Judul|" + names[rnd.nextInt( names.length )] + "|" + b + "|" + b.plusDays( rnd.nextInt( 30 ) ) + "|" + ret + "|" + status + "|" + fine;
+            loans.add( i % 7 == 0 ? line + "\r" : line );
+            if ( i % 13 == 0 ) loans.add( "   " );
+        }
+        write( dir.resolve( "books.txt" ), books.toArray( new String[0] ) );
+        write( dir.resolve( "loans.txt" ), loans.toArray( new String[0] ) );
+
+        List<String> expectBooks = new ArrayList<>();
+        for ( String line : books ) expectBooks.add( bookString( parseBook( line ) ) );
+        List<String> expectLoans = new ArrayList<>();
+        for ( String line : loans )
+        {
+            Loan l = parseLoan( line );
+            if ( l != null ) expectLoans.add( loanString( l ) );
+        }
+
+        for ( boolean parallel : new boolean[] { false, true } )
+        {
+            LibraryStore store = load( dir, false, parallel );
+            List<String> gotBooks = new ArrayList<>();
+            for ( Book b : store.getBooks() ) gotBooks.add( bookString( b ) );
+            List<String> gotLoans = new ArrayList<>();
+            for ( Loan l : store.getLoans() ) gotLoans.add( loanString( l ) );
+            assertEquals( expectBooks, gotBooks );
+            assertEquals( expectLoans, gotLoans );
+        }
+    }
+
+    public void testCoalescedAsyncWritesMatchMemory() throws Exception
+    {
+        coalescedAsyncWrites( false );
+        // mode ringkas: writer menerima salinan LoanTable.copyOfRange dengan kamus yang dipangkas
+        coalescedAsyncWrites( true );
+    }
+
+    private static void coalescedAsyncWrites( boolean compact ) throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LibraryService service = newService( dir, compact );
+        LibraryStore store = service.getStore();
+        store.setAsyncSave( true );
+        store.setJournalEnabled( true );
+
+        // save beruntun tanpa menunggu: batch journal, append, tulis ulang dan checkpoint digabung writer
+        Random rnd = new Random( 4 );
+        List<String> active = new ArrayList<>();
+        for ( int step = 0; step < 1500; step++ )
+        {
+            if ( step == 700 ) store.setJournalEnabled( false );
+            if ( step == 1100 ) store.setJournalEnabled( true );
+            List<Book> books = store.getBooks();
+            int op = books.size() < 5 ? 0 : rnd.nextInt( 6 );
+            try
+            {
+                if ( op == 0 ) service.addBook( "Judul " + step, "Penulis", 2000, 1 + rnd.nextInt( 3 ) );
+                else if ( op == 1 ) service.updateBook( books.get( rnd.nextInt( books.size() ) ).getId(), "Ubah " + step, "Penulis", 2001, 3 );
+                else if ( op == 2 && !active.isEmpty() ) service.returnBook( active.remove( rnd.nextInt( active.size() ) ) );
+                else if ( op == 3 ) service.deleteBook( books.get( rnd.nextInt( books.size() ) ).getId() );
+                else active.add( service.borrowBook( books.get( rnd.nextInt( books.size() ) ).getId(), "p" + rnd.nextInt( 9 ) ).getTrxId() );
+            }
+            catch ( RuntimeException ignored )
+            {
+                // stok habis / masih dipinjam
+            }
+            if ( step % 97 == 0 ) service.checkpoint();
+            else service.save();
+        }
+        service.flush();
+
+        LibraryStore reloaded = newService( dir, false ).getStore();
+        assertEquals( bookStrings( store ), bookStrings( reloaded ) );
+        assertEquals( loanStrings( store ), loanStrings( reloaded ) );
+        try ( DirectoryStream<Path> ds = Files.newDirectoryStream( dir, "*.tmp" ) )
+        {
+            assertFalse( ds.iterator().hasNext() );
+        }
+    }
+
+    public void testLeftoverTempFilesIgnored() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LibraryService service = newService( dir, false );
+        service.getStore().setJournalEnabled( false );
+        service.addBook( "Judul", "Penulis", 2000, 2 );
+        service.borrowBook( "B0001", "Budi" );
+        service.save();
+
+        // crash sesudah menulis .tmp tapi sebelum rename: file lama tetap utuh dan yang dipakai
+        write( dir.resolve( "books.txt.tmp" ), "B0001|Setengah" );
+        write( dir.resolve( "loans.txt.tmp" ), "T000" );
+        LibraryService after = newService( dir, false );
+        assertEquals( bookStrings( service.getStore() ), bookStrings( after.getStore() ) );
+        assertEquals( loanStrings( service.getStore() ), loanStrings( after.getStore() ) );
+
+        // save berikutnya menimpa .tmp basi lalu me-rename
+        after.getStore().setJournalEnabled( false );
+        after.addBook( "Kedua", "Penulis", 2001, 1 );
+        after.save();
+        assertEquals( 2, newService( dir, false ).getStore().getBooks().size() );
+        assertFalse( Files.exists( dir.resolve( "books.txt.tmp" ) ) );
+    }
+
+    public void testIdsNeverReusedAcrossDeleteAndReload() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LibraryService service = newService( dir, false );
+        Set<String> bookIds = new HashSet<>();
+        Set<String> trxIds = new HashSet<>();
+        Random rnd = new Random( 6 );
+        for ( int step = 0; step < 400; step++ )
+        {
+            List<Book> books = service.getStore().getBooks();
+            int op = books.isEmpty() ? 0 : rnd.nextInt( 4 );
+            try
+            {
+                if ( op == 0 )
+                {
+                    assertTrue( bookIds.add( service.addBook( "Judul", "Penulis", 2000, 2 ).getId() ) );
+                }
+                else if ( op == 1 )
+                {
+                    // yang paling sering dihapus justru buku terbaru: id-nya tidak boleh dipakai lagi
+                    Book b = rnd.nextBoolean() ? books.get( books.size() - 1 ) : books.get( rnd.nextInt( books.size() ) );
+                    service.deleteBook( b.getId() );
+                }
+                else if ( op == 2 )
+                {
+                    Loan l = service.borrowBook( books.get( rnd.nextInt( books.size() ) ).getId(), "Budi" );
+                    assertTrue( trxIds.add( l.getTrxId() ) );
+                    service.returnBook( l.getTrxId() );
+                }
+                else
+                {
+                    service.save();
+                    service.flush();
+                    service = newService( dir, false );
+                }
+            }
+            catch ( RuntimeException ignored )
+            {
+                // buku masih dipinjam
+            }
+        }
+    }
+
+    public void testIdsContinueAfterFilesWithoutSequence() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate d = LocalDate.now();
+        write( dir.resolve( "books.txt" ), "B0007|Judul|Penulis|2000|2|2", "B0003|Lain|Penulis|2000|1|1" );
+        write( dir.resolve( "loans.txt" ), "T00042|B0007|Judul|Budi|" + d + "|" + d.plusDays( 7 ) + "|" + d + "|RETURNED|0" );
+
+        // tanpa sequence.txt: id berikutnya diambil dari id terbesar di file
+        LibraryService service = newService( dir, false );
+        assertEquals( "B0008", service.addBook( "Baru", "Penulis", 2001, 1 ).getId() );
+        assertEquals( "T00043", service.borrowBook( "B0003", "Ani" ).getTrxId() );
+    }
+
+    public void testArchivedIdsNotReusedWithoutSequence() throws Exception
+    {
+        Path dir = archived();
+        Files.delete( dir.resolve( "sequence.txt" ) );
+        // id terbesar hanya ada di segmen arsip: loans.txt aktif berhenti di T00004
+        String old = "T00009|B0001|Judul|Eka|2020-03-01|2020-03-08|2020-03-05|RETURNED|0";
+        Files.write( dir.resolve( "archive" ).resolve( "loans-2020-03.txt" ), ( old + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+        LibraryService service = newService( dir, false );
+        assertEquals( "T00010", service.borrowBook( "B0001", "Fajar" ).getTrxId() );
+    }
+
+    public void testParallelLoadMatchesSequential() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|5|4", "B0002|Judul Lain|Penulis|2001|5|5" );
+        // beberapa MB supaya loans.txt terpecah jadi beberapa potongan paralel; diselingi baris
+        // format lama, baris kosong dan baris rusak, dan tanpa '\n' di akhir
+        StringBuilder sb = new StringBuilder();
+        LocalDate d = LocalDate.of( 2023, 1, 1 );
+        for ( int i = 1; i <= 60000; i++ )
+        {
+            LocalDate b = d.plusDays( i % 700 );
+            String trx = String.format( "T%05d", i );
+            if ( i % 97 == 0 ) sb.append( trx ).append( "|B0002|Judul Lain|peminjam" ).append( i % 300 ).append( '|' ).append( b ).append( '|' ).append( b.plusDays( 3 ) ).append( "|RETURNED\n" );
+            else if ( i % 101 == 0 ) sb.append( "\n" );
+            else if ( i % 103 == 0 ) sb.append( "rusak|" ).append( i ).append( '\n' );
+            else sb.append( trx ).append( "|B0001|Judul|peminjam" ).append( i % 300 ).append( '|' ).append( b ).append( '|' ).append( b.plusDays( 7 ) )
+                    .append( i % 3 == 0 ? "||BORROWED|0" : "|" + b.plusDays( 5 ) + "|RETURNED|" + ( i % 5 ) * 1000 ).append( '\n' );
+        }
+        sb.append( "T99999|B0001|Judul|terakhir|" ).append( d ).append( '|' ).append( d.plusDays( 7 ) ).append( "||BORROWED|0" );
+        Files.write( dir.resolve( "loans.txt" ), sb.toString().getBytes( StandardCharsets.UTF_8 ) );
+        assertTrue( Files.size( dir.resolve( "loans.txt" ) ) > 4 << 20 );
+
+        for ( boolean compact : new boolean[] { false, true } )
+        {
+            List<Loan> sequential = load( dir, compact, false ).getLoans();
+            List<Loan> parallel = load( dir, compact, true ).getLoans();
+            assertEquals( sequential.size(), parallel.size() );
+            assertEquals( "T99999", parallel.get( parallel.size() - 1 ).getTrxId() );
+            for ( int i = 0; i < sequential.size(); i++ )
+            {
+                assertEquals( loanString( sequential.get( i ) ), loanString( parallel.get( i ) ) );
+            }
+        }
+    }
+
+    public void testJournalReplayIgnoresTornTrailingLine() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate d = LocalDate.now();
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|2|2" );
+        // crash di tengah append: record terakhir tanpa '\n' tidak boleh diputar ulang
+        String done = "L|T00001|B0001|Judul|Budi|" + d + "|" + d.plusDays( 7 ) + "||BORROWED|0|1\n";
+        String torn = "L|T00002|B0001|Judul|Ani|" + d + "|" + d.plusDays( 7 ) + "||BORROWED|0|0";
+        Files.write( dir.resolve( "journal.txt" ), ( "B|B0002|Baru|Penulis|2001|1|1\n" + done + torn ).getBytes( StandardCharsets.UTF_8 ) );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        assertNotNull( store.findBook( "B0002" ) );
+        assertNotNull( store.findLoan( "T00001" ) );
+        assertNull( store.findLoan( "T00002" ) );
+        assertEquals( 1, store.findBook( "B0001" ).getStockAvail() );
+    }
+
+    public void testJournalReplayUpsertsAndDeletes() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate d = LocalDate.now().minusDays( 10 );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|3|2", "B0002|Lain|Penulis|2001|1|1" );
+        write( dir.resolve( "loans.txt" ), "T00001|B0001|Judul|Budi|" + d + "|" + d.plusDays( 7 ) + "||BORROWED|0" );
+        write( dir.resolve( "journal.txt" ),
+                "B|B0001|Judul Baru|Penulis|2000|3|2",
+                "L|T00001|B0001|Judul|Budi|" + d + "|" + d.plusDays( 7 ) + "|" + d.plusDays( 9 ) + "|RETURNED|4000|3",
+                "L|T00002|B0001|Judul Baru|Ani|" + d + "|" + d.plusDays( 7 ) + "||BORROWED|0|2",
+                "D|B0002" );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        Book b = store.findBook( "B0001" );
+        assertEquals( "Judul Baru", b.getTitle() );
+        assertEquals( 2, b.getStockAvail() );
+        assertNull( store.findBook( "B0002" ) );
+
+        // record L untuk trx yang sudah ada menimpa, bukan menambah
+        assertEquals( 2, store.getLoans().size() );
+        Loan l = store.findLoan( "T00001" );
+        assertEquals( Loan.RETURNED, l.getStatus() );
+        assertEquals( d.plusDays( 9 ), l.getReturnDate() );
+        assertEquals( 4000, l.getFine() );
+        assertEquals( "Ani", store.findLoan( "T00002" ).getBorrower() );
+    }
+
+    public void testCheckpointAfterCheckpointEveryRecords() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LibraryStore store = newService( dir, false ).getStore();
+        store.setJournalEnabled( true );
+        for ( int i = 1; i < LibraryStore.CHECKPOINT_EVERY; i++ )
+        {
+            store.addBook( new Book( String.format( "B%04d", i ), "Judul", "Penulis", 2000, 1, 1 ) );
+            store.save();
+        }
+        assertEquals( LibraryStore.CHECKPOINT_EVERY - 1, Files.readAllLines( store.getJournalFile() ).size() );
+        assertFalse( Files.exists( dir.resolve( "books.txt" ) ) );
+
+        // record ke-CHECKPOINT_EVERY: file utama ditulis penuh dan journal dibuang
+        store.addBook( new Book( String.format( "B%04d", LibraryStore.CHECKPOINT_EVERY ), "Judul", "Penulis", 2000, 1, 1 ) );
+        store.save();
+        assertFalse( Files.exists( store.getJournalFile() ) );
+        assertEquals( LibraryStore.CHECKPOINT_EVERY, Files.readAllLines( dir.resolve( "books.txt" ) ).size() );
+        assertEquals( LibraryStore.CHECKPOINT_EVERY, newService( dir, false ).getStore().getBooks().size() );
+    }
+
+    public void testFreshSnapshotPreferredOverText() throws Exception
+    {
+        Path dir = checkpointed();
+        // books.txt diedit tapi lebih tua dari snapshot: snapshot yang dipakai
+        editBooks( dir, -60 );
+        LibraryStore store = newService( dir, false ).getStore();
+        assertEquals( "Judul", store.findBook( "B0001" ).getTitle() );
+        assertEquals( 1, store.getLoans().size() );
+    }
+
+    public void testStaleSnapshotIgnored() throws Exception
+    {
+        Path dir = checkpointed();
+        editBooks( dir, 60 );
+        LibraryStore store = newService( dir, false ).getStore();
+        assertEquals( "Diubah", store.findBook( "B0001" ).getTitle() );
+        assertEquals( 1, store.getLoans().size() );
+    }
+
+    public void testCorruptSnapshotFallsBackToText() throws Exception
+    {
+        Path dir = checkpointed();
+        editBooks( dir, -60 );
+        // satu byte payload block terakhir dibalik: CRC tidak cocok, snapshot tetap paling baru
+        Path snap = dir.resolve( "library.bin" );
+        FileTime mtime = Files.getLastModifiedTime( snap );
+        byte[] data = Files.readAllBytes( snap );
+        data[data.length - 5] ^= 0x01;
+        Files.write( snap, data );
+        Files.setLastModifiedTime( snap, mtime );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        assertEquals( "Diubah", store.findBook( "B0001" ).getTitle() );
+        assertEquals( 1, store.getBooks().size() );
+        assertEquals( 1, store.getLoans().size() );
+    }
+
+    public void testCorruptSnapshotHeaderFallsBackToText() throws Exception
+    {
+        Path dir = checkpointed();
+        editBooks( dir, -60 );
+        // jumlah loan di header diubah jadi raksasa: ditolak sebelum alokasi, bukan OutOfMemoryError
+        Path snap = dir.resolve( "library.bin" );
+        FileTime mtime = Files.getLastModifiedTime( snap );
+        byte[] data = Files.readAllBytes( snap );
+        data[16] = 0x7F;
+        Files.write( snap, data );
+        Files.setLastModifiedTime( snap, mtime );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        assertEquals( "Diubah", store.findBook( "B0001" ).getTitle() );
+        assertEquals( 1, store.getLoans().size() );
+    }
+
+    public void testAppendCheckpointRewritesSnapshot() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LibraryService service = newService( dir, false );
+        service.addBook( "Judul", "Penulis", 2000, LibraryStore.CHECKPOINT_EVERY );
+        service.getStore().checkpoint();
+        // tiap pinjam = record L + B di journal; checkpoint otomatis meng-append loans.txt
+        int borrowed = LibraryStore.CHECKPOINT_EVERY / 2;
+        for ( int i = 0; i < borrowed; i++ )
+        {
+            service.borrowBook( "B0001", "Peminjam" + i );
+            service.save();
+        }
+        service.flush();
+        assertFalse( Files.exists( service.getStore().getJournalFile() ) );
+        assertTrue( Files.exists( service.getStore().getSnapshotFile() ) );
+
+        // books.txt lebih tua dari snapshot: state dibaca dari snapshot dan harus lengkap
+        editBooks( dir, -60 );
+        LibraryStore store = newService( dir, false ).getStore();
+        assertEquals( "Judul", store.findBook( "B0001" ).getTitle() );
+        assertEquals( borrowed, store.getLoans().size() );
+        assertEquals( LibraryStore.CHECKPOINT_EVERY - borrowed, store.findBook( "B0001" ).getStockAvail() );
+    }
+
+    public void testOldReturnedLoansMovedToMonthlySegments() throws Exception
+    {
+        Path dir = archived();
+        Path archive = dir.resolve( "archive" );
+        assertEquals( 1, Files.readAllLines( archive.resolve( "loans-2020-01.txt" ) ).size() );
+        assertTrue( Files.readAllLines( archive.resolve( "loans-2020-01.txt" ) ).get( 0 ).startsWith( "T00001|" ) );
+        assertTrue( Files.readAllLines( archive.resolve( "loans-2020-02.txt" ) ).get( 0 ).startsWith( "T00002|" ) );
+
+        // yang masih dipinjam tetap aktif walau sudah lama
+        List<String> active = Files.readAllLines( dir.resolve( "loans.txt" ) );
+        assertEquals( 2, active.size() );
+        assertTrue( active.get( 0 ).startsWith( "T00003|" ) );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        assertEquals( new TreeSet<>( Arrays.asList( YearMonth.of( 2020, 1 ), YearMonth.of( 2020, 2 ) ) ), store.getArchiveMonths() );
+        assertEquals( 2, store.getLoans().size() );
+        assertEquals( 2, store.getArchivedLoans( null, null ).size() );
+    }
+
+    public void testArchiveSegmentsLoadedOnlyWhenQueried() throws Exception
+    {
+        Path dir = archived();
+        LibraryStore store = newService( dir, false ).getStore();
+
+        List<Loan> jan = store.getArchivedLoans( LocalDate.of( 2020, 1, 1 ), LocalDate.of( 2020, 1, 31 ) );
+        assertEquals( 1, jan.size() );
+        assertEquals( "T00001", jan.get( 0 ).getTrxId() );
+
+        // segmen Januari sudah di memori, Februari belum pernah dibaca
+        Files.delete( dir.resolve( "archive" ).resolve( "loans-2020-01.txt" ) );
+        Files.delete( dir.resolve( "archive" ).resolve( "loans-2020-02.txt" ) );
+        assertEquals( 1, store.getArchivedLoans( LocalDate.of( 2020, 1, 1 ), LocalDate.of( 2020, 1, 31 ) ).size() );
+        assertTrue( store.getArchivedLoans( LocalDate.of( 2020, 2, 1 ), null ).isEmpty() );
+    }
+
+    public void testCompactViewsSurviveArchiving() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate recent = LocalDate.now().minusDays( 1 );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|10|8" );
+        List<String> loans = new ArrayList<>();
+        for ( int i = 1; i <= 5; i++ )
+        {
+            loans.add( "T0000" + i + "|B0001|Judul|lama" + i + "|2020-01-0" + i + "|2020-01-1" + i + "|2020-01-1" + i + "|RETURNED|0" );
+        }
+        loans.add( "T00006|B0001|Judul|zz|" + recent + "|" + recent.plusDays( 7 ) + "||BORROWED|0" );
+        loans.add( "T00007|B0001|Judul|yy|" + recent + "|" + recent.plusDays( 7 ) + "||BORROWED|0" );
+        write( dir.resolve( "loans.txt" ), loans.toArray( new String[0] ) );
+
+        LibraryService service = newService( dir, true );
+        LibraryStore store = service.getStore();
+        Loan archived = store.getLoans().get( 0 );
+        Loan held = store.getLoans().get( 5 );
+        assertEquals( "T00006", held.getTrxId() );
+
+        // checkpoint memindahkan T00001..T00005 ke arsip dan memadatkan tabel
+        store.checkpoint();
+        store.flush();
+        assertEquals( 2, store.getLoans().size() );
+        for ( int i = 0; i < 3; i++ ) service.borrowBook( "B0001", "later" + i );
+
+        assertEquals( "T00006", held.getTrxId() );
+        assertEquals( Loan.BORROWED, held.getStatus() );
+        assertEquals( "zz", held.getBorrower() );
+        assertEquals( "T00001", archived.getTrxId() );
+        assertEquals( Loan.RETURNED, archived.getStatus() );
+        assertEquals( "lama1", archived.getBorrower() );
+
+        // kembalikan lewat view yang dipegang: transaksi yang benar yang berubah
+        service.returnBook( held.getTrxId() );
+        assertEquals( Loan.RETURNED, held.getStatus() );
+        assertEquals( Loan.RETURNED, store.findLoan( "T00006" ).getStatus() );
+        assertEquals( Loan.BORROWED, store.findLoan( "T00007" ).getStatus() );
+    }
+
+    public void testArchiveSegmentWrittenTwiceIsReadOnce() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|1|1" );
+        write( dir.resolve( "loans.txt" ), "T00003|B0001|Judul|baru|" + LocalDate.now() + "|" + LocalDate.now().plusDays( 7 ) + "|" + LocalDate.now() + "|RETURNED|0" );
+        // crash setelah append segmen tapi sebelum loans.txt diganti, lalu diarsipkan lagi
+        Files.createDirectories( dir.resolve( "archive" ) );
+        String a = "T00001|B0001|Judul|lama|2020-01-02|2020-01-09|2020-01-09|RETURNED|0";
+        String b = "T00002|B0001|Judul|lama|2020-01-05|2020-01-12|2020-01-12|RETURNED|0";
+        write( dir.resolve( "archive" ).resolve( "loans-2020-01.txt" ), a, b, a, b );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        List<String> ids = new ArrayList<>();
+        for ( Loan l : store.getArchivedLoans( null, null ) ) ids.add( l.getTrxId() );
+        assertEquals( Arrays.asList( "T00001", "T00002" ), ids );
+    }
+
+    public void testArchivedBeforeWriterFinishesStillListed() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|1|1" );
+        write( dir.resolve( "loans.txt" ), "T00001|B0001|Judul|lama|2020-01-02|2020-01-09|2020-01-09|RETURNED|0" );
+        LibraryStore store = load( dir, false, false );
+        store.setAsyncSave( true );
+        // segmen belum pernah dimuat dan append-nya mungkin masih antre di writer: loan tetap muncul sekali
+        store.checkpoint();
+        List<Loan> archived = store.getArchivedLoans( null, null );
+        store.flush();
+        assertEquals( 1, archived.size() );
+        assertEquals( "T00001", archived.get( 0 ).getTrxId() );
+        assertEquals( 1, store.getArchivedLoans( null, null ).size() );
+    }
+
+    public void testBorrowerFinesSameBeforeAndAfterRestart() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate recent = LocalDate.now().minusDays( 1 );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|2|2" );
+        write( dir.resolve( "loans.txt" ),
+                "T00001|B0001|Judul|Budi|2020-01-02|2020-01-09|2020-01-11|RETURNED|4000",
+                "T00002|B0001|Judul|Budi|" + recent + "|" + recent.plusDays( 7 ) + "|" + recent.plusDays( 1 ) + "|RETURNED|2000" );
+
+        LibraryService service = newService( dir, false );
+        assertEquals( 6000, service.borrowerFines( "budi" ) );
+
+        // T00001 pindah ke arsip: dendanya keluar dari angka, sama seperti setelah restart
+        service.checkpoint();
+        service.flush();
+        assertEquals( 2000, service.borrowerFines( "budi" ) );
+        assertEquals( 2000, newService( dir, false ).borrowerFines( "budi" ) );
+    }
+
+    public void testTornLoanAppendIsHealedByJournal() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate d = LocalDate.now();
+        String t1 = "T00001|B0001|Judul|Budi|" + d + "|" + d.plusDays( 7 ) + "||BORROWED|0";
+        String t2 = "T00002|B0001|Judul|Ani|" + d + "|" + d.plusDays( 7 ) + "|" + d.plusDays( 1 ) + "|RETURNED|0";
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|2|1" );
+        // crash di tengah append checkpoint: baris terakhir terpotong di tanggal kembali (7 field,
+        // terbaca seperti format lama), journal yang ditulis lebih dulu masih utuh
+        String torn = t2.substring( 0, t2.indexOf( "|RETURNED" ) - 4 );
+        Files.write( dir.resolve( "loans.txt" ), ( t1 + "\n" + torn ).getBytes( StandardCharsets.UTF_8 ) );
+        write( dir.resolve( "journal.txt" ), "L|" + t1 + "|1", "L|" + t2 + "|1" );
+
+        LibraryStore store = newService( dir, false ).getStore();
+        Loan healed = store.findLoan( "T00002" );
+        assertEquals( Loan.RETURNED, healed.getStatus() );
+        assertEquals( d.plusDays( 1 ), healed.getReturnDate() );
+        assertEquals( 2, store.getLoans().size() );
+        assertEquals( 1, store.findBook( "B0001" ).getStockAvail() );
+    }
+
+    public void testLoanAppendWithoutJournalRewritesAtomically() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LibraryService service = newService( dir, false );
+        service.getStore().setJournalEnabled( false );
+        service.addBook( "Judul", "Penulis", 2000, 3 );
+        service.save();
+        service.borrowBook( "B0001", "Budi" );
+        service.save();
+        service.flush();
+
+        // tulis ulang penuh membuat snapshot baru bersama loans.txt
+        assertTrue( Files.exists( service.getStore().getSnapshotFile() ) );
+        assertEquals( 1, newService( dir, false ).getStore().getLoans().size() );
+    }
+
+    // dua loan RETURNED lama (Jan & Feb 2020) sudah dipindah ke arsip oleh checkpoint
+    private static Path archived() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate recent = LocalDate.now().minusDays( 1 );
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|5|4" );
+        write( dir.resolve( "loans.txt" ),
+                "T00001|B0001|Judul|Budi|2020-01-05|2020-01-12|2020-01-10|RETURNED|0",
+                "T00002|B0001|Judul|Ani|2020-02-10|2020-02-17|2020-02-15|RETURNED|0",
+                "T00003|B0001|Judul|Citra|2020-01-07|2020-01-14||BORROWED|0",
+                "T00004|B0001|Judul|Dodi|" + recent + "|" + recent.plusDays( 7 ) + "|" + recent + "|RETURNED|0" );
+        newService( dir, false ).getStore().checkpoint();
+        return dir;
+    }
+
+    // data satu buku + satu loan yang sudah di-checkpoint, jadi library.bin ada dan sejajar dengan teks
+    private static Path checkpointed() throws Exception
+    {
+        Path dir = Files.createTempDirectory( "library-store-test" );
+        LocalDate d = LocalDate.now();
+        write( dir.resolve( "books.txt" ), "B0001|Judul|Penulis|2000|2|1" );
+        write( dir.resolve( "loans.txt" ), "T00001|B0001|Judul|Budi|" + d + "|" + d.plusDays( 7 ) + "||BORROWED|0" );
+        LibraryStore store = newService( dir, false ).getStore();
+        store.checkpoint();
+        assertTrue( Files.exists( store.getSnapshotFile() ) );
+        return dir;
+    }
+
+    // tulis judul lain ke books.txt dengan mtime bergeser dari snapshot
+    private static void editBooks( Path dir, int seconds ) throws Exception
+    {
+        Path books = dir.resolve( "books.txt" );
+        write( books, "B0001|Diubah|Penulis|2000|2|1" );
+        long snap = Files.getLastModifiedTime( dir.resolve( "library.bin" ) ).toMillis();
+        Files.setLastModifiedTime( books, FileTime.fromMillis( snap + seconds * 1000L ) );
+    }
+
+    private static LibraryStore load( Path dir, boolean compact, boolean parallel ) throws Exception
+    {
+        LibraryStore store = new LibraryStore( dir.resolve( "books.txt" ), dir.resolve( "loans.txt" ) );
+        store.setCompactLoans( compact );
+        store.setParallelLoad( parallel );
+        store.load();
+        return store;
+    }
+
+    // pembanding brute force: split + parse bawaan JDK
+    private static Book parseBook( String line )
+    {
+        String[] f = line.split( "\\|", -1 );
+        return new Book( f[0], f[1], f[2], Integer.parseInt( f[3].trim() ), Integer.parseInt( f[4].trim() ), Integer.parseInt( f[5].trim() ) );
+    }
+
+    private static Loan parseLoan( String line )
+    {
+        String s = line.endsWith( "\r" ) ? line.substring( 0, line.length() - 1 ) : line;
+        if ( s.trim().isEmpty() ) return null;
+        String[] f = s.split( "\\|", -1 );
+        LocalDate borrow = LocalDate.parse( f[4] );
+        if ( f.length >= 9 )
+        {
+            return new Loan( f[0], f[1], f[2], f[3], borrow, LocalDate.parse( f[5] ), dateOrNull( f[6] ), f[7],
+                    f[8].trim().isEmpty() ? 0 : Long.parseLong( f[8].trim() ) );
+        }
+        return new Loan( f[0], f[1], f[2], f[3], borrow, borrow.plusDays( 7 ), dateOrNull( f[5] ), f[6], 0 );
+    }
+
+    private static LocalDate dateOrNull( String s )
+    {
+        return s.trim().isEmpty() ? null : LocalDate.parse( s.trim() );
+    }
+
+    private static String bookString( Book b )
+    {
+        return String.join( "|", b.getId(), b.getTitle(), b.getAuthor(), String.valueOf( b.getYear() ),
+                String.valueOf( b.getStockTotal() ), String.valueOf( b.getStockAvail() ) );
+    }
+
+    private static List<String> bookStrings( LibraryStore store )
+    {
+        List<String> out = new ArrayList<>();
+        for ( Book b : store.getBooks() ) out.add( bookString( b ) );
+        return out;
+    }
+
+    private static List<String> loanStrings( LibraryStore store )
+    {
+        List<String> out = new ArrayList<>();
+        for ( Loan l : store.getLoans() ) out.add( loanString( l ) );
+        return out;
+    }
+
+    private static String loanString( Loan l )
+    {
+        return String.join( "|", l.getTrxId(), l.getBookId(), l.getBookTitle(), l.getBorrower(),
+                String.valueOf( l.getBorrowDate() ), String.valueOf( l.getDueDate() ), String.valueOf( l.getReturnDate() ),
+                l.getStatus(), String.valueOf( l.getFine() ) );
+    }
+
+    private static LibraryService newService( Path dir, boolean compact ) throws Exception
+    {
+        LibraryStore store = new LibraryStore( dir.resolve( "books.txt" ), dir.resolve( "loans.txt" ) );
+        store.setCompactLoans( compact );
+        LibraryService service = new LibraryService( store );
+        service.load();
+        return service;
+    }
+
+    private static void write( Path file, String... lines ) throws Exception
+    {
+        Files.write( file, ( String.join( "\n", lines ) + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+}